@@ -0,0 +1,41 @@
+package com.indeed.ossgradle;
+
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A sample of what functional tests look like. The build is kept minimal, only applying the plugin
+ * and configuring a single task, so that once the TestKit daemon is warm it takes well under a
+ * second.
+ */
+class IndeedOssGradlePluginFunctionalTest {
+    @TempDir Path projectDir;
+
+    @Test
+    void registersWarmCaches() throws IOException {
+        write("settings.gradle", "rootProject.name = 'sample'\n");
+        write("build.gradle", "plugins {\n    id 'com.indeed.oss'\n}\n");
+
+        final BuildResult result =
+                GradleRunner.create()
+                        .withProjectDir(projectDir.toFile())
+                        .withPluginClasspath()
+                        .withArguments("help", "--task", "warmCaches")
+                        .build();
+
+        assertTrue(result.getOutput().contains(":warmCaches"), result.getOutput());
+    }
+
+    private void write(final String path, final String content) throws IOException {
+        Files.write(projectDir.resolve(path), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,15 +1,34 @@
 package com.indeed.ossgradle;
 
+import com.indeed.ossgradle.internal.IndeedOssCompositeBuildPlugin;
 import com.indeed.ossgradle.internal.IndeedOssExtension;
 import com.indeed.ossgradle.internal.IndeedOssUtil;
+import com.indeed.ossgradle.internal.WarmCachesPlugin;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.initialization.Settings;
 
-public class IndeedOssGradlePlugin implements Plugin<Project> {
+/**
+ * Applied to the root project of every indeed oss build. It may also be applied from
+ * settings.gradle, which additionally enables composite-build development against sibling
+ * repositories.
+ */
+public class IndeedOssGradlePlugin implements Plugin<Object> {
     @Override
-    public void apply(final Project rootProject) {
+    public void apply(final Object target) {
+        if (target instanceof Settings) {
+            ((Settings) target).getPlugins().apply(IndeedOssCompositeBuildPlugin.class);
+        } else if (target instanceof Project) {
+            apply((Project) target);
+        } else {
+            throw new IllegalArgumentException("com.indeed.oss cannot be applied to " + target);
+        }
+    }
+
+    private void apply(final Project rootProject) {
         IndeedOssUtil.assertRootProject(rootProject);
         rootProject.allprojects(
                 p -> p.getExtensions().create("indeedOss", IndeedOssExtension.class, p));
+        rootProject.getPlugins().apply(WarmCachesPlugin.class);
     }
 }
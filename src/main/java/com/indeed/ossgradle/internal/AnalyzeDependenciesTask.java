@@ -0,0 +1,288 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.artifacts.ArtifactCollection;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ProjectComponentIdentifier;
+import org.gradle.api.artifacts.result.ResolvedArtifactResult;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.SetProperty;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Compares the classes that a project's main and test bytecode actually reference against its
+ * declared dependencies. Reports unused declarations, used but undeclared (transitive)
+ * dependencies, and dependencies declared as api or implementation when they should be the other.
+ */
+@CacheableTask
+public abstract class AnalyzeDependenciesTask extends DefaultTask {
+    private ArtifactCollection mainClasspathArtifacts;
+    private ArtifactCollection testClasspathArtifacts;
+
+    @Classpath
+    public abstract ConfigurableFileCollection getMainClasses();
+
+    @Classpath
+    public abstract ConfigurableFileCollection getTestClasses();
+
+    /** Dependencies declared in api configurations, as group:name or project :path */
+    @Input
+    public abstract SetProperty<String> getDeclaredApi();
+
+    /** Dependencies declared in implementation and compileOnly */
+    @Input
+    public abstract SetProperty<String> getDeclaredImplementation();
+
+    /** Dependencies declared in testImplementation and testCompileOnly */
+    @Input
+    public abstract SetProperty<String> getDeclaredTest();
+
+    /** Whether api vs implementation can be checked, which needs the java-library plugin */
+    @Input
+    public abstract Property<Boolean> getCheckApi();
+
+    @Input
+    public abstract Property<Boolean> getFailOnIssues();
+
+    @OutputFile
+    public abstract RegularFileProperty getReport();
+
+    @Internal
+    public ArtifactCollection getMainClasspathArtifacts() {
+        return mainClasspathArtifacts;
+    }
+
+    public void setMainClasspathArtifacts(final ArtifactCollection mainClasspathArtifacts) {
+        this.mainClasspathArtifacts = mainClasspathArtifacts;
+    }
+
+    @Classpath
+    public FileCollection getMainClasspath() {
+        return mainClasspathArtifacts.getArtifactFiles();
+    }
+
+    @Internal
+    public ArtifactCollection getTestClasspathArtifacts() {
+        return testClasspathArtifacts;
+    }
+
+    public void setTestClasspathArtifacts(final ArtifactCollection testClasspathArtifacts) {
+        this.testClasspathArtifacts = testClasspathArtifacts;
+    }
+
+    @Classpath
+    public FileCollection getTestClasspath() {
+        return testClasspathArtifacts.getArtifactFiles();
+    }
+
+    @TaskAction
+    public void run() throws IOException {
+        final Set<String> declaredApi = getDeclaredApi().get();
+        final Set<String> declaredImplementation = getDeclaredImplementation().get();
+        final Set<String> declaredTest = getDeclaredTest().get();
+        final Set<String> declaredMain = new HashSet<>(declaredApi);
+        declaredMain.addAll(declaredImplementation);
+
+        final Map<String, String> mainClassModules = indexClasspath(mainClasspathArtifacts);
+        final Set<ClassReferences> mainClasses = readClasses(getMainClasses());
+        final Set<String> usedMain =
+                toModules(mainClasses, ClassReferences::getReferences, mainClassModules);
+        final Set<String> abiMain =
+                toModules(mainClasses, ClassReferences::getAbiReferences, mainClassModules);
+
+        final Map<String, String> testClassModules = indexClasspath(testClasspathArtifacts);
+        final Set<String> usedTest =
+                toModules(
+                        readClasses(getTestClasses()),
+                        ClassReferences::getReferences,
+                        testClassModules);
+
+        final List<String> issues = new ArrayList<>();
+        report(issues, "Unused main dependencies", difference(declaredMain, usedMain));
+        report(
+                issues,
+                "Used but undeclared main dependencies",
+                difference(usedMain, declaredMain));
+        if (getCheckApi().get()) {
+            report(
+                    issues,
+                    "Declared as api but not part of the public api, should be implementation",
+                    difference(declaredApi, abiMain));
+            final Set<String> shouldBeApi = new TreeSet<>(declaredImplementation);
+            shouldBeApi.retainAll(abiMain);
+            report(
+                    issues,
+                    "Part of the public api but declared as implementation, should be api",
+                    shouldBeApi);
+        }
+        report(issues, "Unused test dependencies", difference(declaredTest, usedTest));
+        final Set<String> undeclaredTest = difference(usedTest, declaredTest);
+        undeclaredTest.removeAll(declaredMain);
+        report(issues, "Used but undeclared test dependencies", undeclaredTest);
+
+        final String report =
+                issues.isEmpty() ? "No dependency issues found\n" : String.join("\n", issues);
+        Files.write(
+                getReport().get().getAsFile().toPath(), report.getBytes(StandardCharsets.UTF_8));
+        if (issues.isEmpty()) {
+            return;
+        }
+        getLogger().warn(report);
+        if (getFailOnIssues().get()) {
+            throw new GradleException(
+                    "Dependency issues found, see " + getReport().get().getAsFile());
+        }
+    }
+
+    private static void report(
+            final List<String> issues, final String title, final Set<String> modules) {
+        if (modules.isEmpty()) {
+            return;
+        }
+        final StringBuilder builder = new StringBuilder(title).append(":\n");
+        for (final String module : modules) {
+            builder.append("  ").append(module).append('\n');
+        }
+        issues.add(builder.toString());
+    }
+
+    private static Set<String> difference(final Set<String> a, final Set<String> b) {
+        final Set<String> result = new TreeSet<>(a);
+        result.removeAll(b);
+        return result;
+    }
+
+    private static Set<String> toModules(
+            final Set<ClassReferences> classes,
+            final Function<ClassReferences, Set<String>> references,
+            final Map<String, String> classModules) {
+        final Set<String> ownClasses =
+                classes.stream().map(ClassReferences::getName).collect(Collectors.toSet());
+        final Set<String> modules = new HashSet<>();
+        for (final ClassReferences classReferences : classes) {
+            for (final String reference : references.apply(classReferences)) {
+                if (ownClasses.contains(reference)) {
+                    continue;
+                }
+                final String module = classModules.get(reference);
+                if (module != null) {
+                    modules.add(module);
+                }
+            }
+        }
+        return modules;
+    }
+
+    private static Set<ClassReferences> readClasses(final FileCollection classesDirs)
+            throws IOException {
+        final Set<ClassReferences> classes = new HashSet<>();
+        for (final File dir : classesDirs.getFiles()) {
+            if (!dir.isDirectory()) {
+                continue;
+            }
+            try (final Stream<Path> files = Files.walk(dir.toPath())) {
+                for (final Path file :
+                        files.filter(f -> f.toString().endsWith(".class"))
+                                .collect(Collectors.toList())) {
+                    try (final InputStream in = Files.newInputStream(file)) {
+                        classes.add(ClassReferences.read(in));
+                    }
+                }
+            }
+        }
+        return classes;
+    }
+
+    /** Maps every class on the classpath to the module providing it */
+    private static Map<String, String> indexClasspath(final ArtifactCollection artifacts) {
+        final Map<String, String> classModules = new HashMap<>();
+        for (final ResolvedArtifactResult artifact : artifacts.getArtifacts()) {
+            final String module = moduleKey(artifact.getId().getComponentIdentifier());
+            if (module == null) {
+                continue;
+            }
+            for (final String className : listClasses(artifact.getFile())) {
+                classModules.putIfAbsent(className, module);
+            }
+        }
+        return classModules;
+    }
+
+    private static Set<String> listClasses(final File file) {
+        final Set<String> classes = new HashSet<>();
+        try {
+            if (file.isDirectory()) {
+                try (final Stream<Path> files = Files.walk(file.toPath())) {
+                    files.filter(f -> f.toString().endsWith(".class"))
+                            .forEach(f -> classes.add(toClassName(file.toPath().relativize(f))));
+                }
+            } else if (file.getName().endsWith(".jar")) {
+                try (final ZipFile zip = new ZipFile(file)) {
+                    final Enumeration<? extends ZipEntry> entries = zip.entries();
+                    while (entries.hasMoreElements()) {
+                        final String name = entries.nextElement().getName();
+                        if (name.endsWith(".class")) {
+                            classes.add(
+                                    name.replaceFirst("^META-INF/versions/\\d+/", "")
+                                            .replaceFirst("\\.class$", ""));
+                        }
+                    }
+                }
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return classes;
+    }
+
+    private static String toClassName(final Path relativePath) {
+        return relativePath
+                .toString()
+                .replace(File.separatorChar, '/')
+                .replaceFirst("\\.class$", "");
+    }
+
+    @Nullable
+    static String moduleKey(final ComponentIdentifier id) {
+        if (id instanceof ModuleComponentIdentifier) {
+            final ModuleComponentIdentifier moduleId = (ModuleComponentIdentifier) id;
+            return moduleId.getGroup() + ":" + moduleId.getModule();
+        }
+        if (id instanceof ProjectComponentIdentifier) {
+            return "project " + ((ProjectComponentIdentifier) id).getProjectPath();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,242 @@
+package com.indeed.ossgradle.internal;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The classes referenced by a single class file, read straight from its constant pool and member
+ * descriptors. Class names are in internal form, e.g. {@code java/lang/String}.
+ */
+class ClassReferences {
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PROTECTED = 0x0004;
+    private static final Pattern DESCRIPTOR_CLASS = Pattern.compile("L([^;<>.\\[\\s]+)[;<]");
+
+    private final String name;
+    private final Set<String> references = new HashSet<>();
+    private final Set<String> abiReferences = new HashSet<>();
+
+    private ClassReferences(final String name) {
+        this.name = name;
+    }
+
+    /** The class itself */
+    public String getName() {
+        return name;
+    }
+
+    /** Every class referenced anywhere in the class file */
+    public Set<String> getReferences() {
+        return references;
+    }
+
+    /**
+     * Classes that are part of this class's public api: its supertypes and the types in its
+     * public and protected signatures. Empty if the class isn't public.
+     */
+    public Set<String> getAbiReferences() {
+        return abiReferences;
+    }
+
+    public static ClassReferences read(final InputStream stream) throws IOException {
+        final DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != 0xCAFEBABE) {
+            throw new IOException("Not a class file");
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+
+        final int constantPoolCount = in.readUnsignedShort();
+        final String[] utf8s = new String[constantPoolCount];
+        final int[] classNameIndexes = new int[constantPoolCount];
+        for (int i = 1; i < constantPoolCount; i++) {
+            final int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1: // Utf8
+                    utf8s[i] = in.readUTF();
+                    break;
+                case 7: // Class
+                    classNameIndexes[i] = in.readUnsignedShort();
+                    break;
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    skip(in, 2);
+                    break;
+                case 15: // MethodHandle
+                    skip(in, 3);
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    skip(in, 4);
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    skip(in, 8);
+                    i++; // takes up two entries
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        final int access = in.readUnsignedShort();
+        final String thisClass = utf8s[classNameIndexes[in.readUnsignedShort()]];
+        final ClassReferences result = new ClassReferences(thisClass);
+        final boolean isPublic = (access & ACC_PUBLIC) != 0;
+
+        // Anything in the constant pool is referenced by the class somewhere. Descriptors of
+        // fields, methods, signatures and annotations are plain utf8 entries.
+        for (int i = 1; i < constantPoolCount; i++) {
+            if (classNameIndexes[i] != 0) {
+                result.addClassName(result.references, utf8s[classNameIndexes[i]]);
+            } else if (utf8s[i] != null) {
+                result.addDescriptor(result.references, utf8s[i]);
+            }
+        }
+
+        final int superClass = in.readUnsignedShort();
+        if (isPublic && superClass != 0) {
+            result.addClassName(result.abiReferences, utf8s[classNameIndexes[superClass]]);
+        }
+        final int interfacesCount = in.readUnsignedShort();
+        for (int i = 0; i < interfacesCount; i++) {
+            final int iface = in.readUnsignedShort();
+            if (isPublic) {
+                result.addClassName(result.abiReferences, utf8s[classNameIndexes[iface]]);
+            }
+        }
+
+        // fields, then methods
+        for (int memberType = 0; memberType < 2; memberType++) {
+            final int membersCount = in.readUnsignedShort();
+            for (int i = 0; i < membersCount; i++) {
+                final int memberAccess = in.readUnsignedShort();
+                in.readUnsignedShort(); // name
+                final String descriptor = utf8s[in.readUnsignedShort()];
+                final boolean isAbi =
+                        isPublic && (memberAccess & (ACC_PUBLIC | ACC_PROTECTED)) != 0;
+                if (isAbi) {
+                    result.addDescriptor(result.abiReferences, descriptor);
+                }
+                result.readAttributes(in, utf8s, classNameIndexes, isAbi);
+            }
+        }
+
+        // The class's own attributes come last, e.g. its generic supertypes and annotations
+        result.readAttributes(in, utf8s, classNameIndexes, isPublic);
+
+        result.references.remove(thisClass);
+        result.abiReferences.remove(thisClass);
+        return result;
+    }
+
+    /**
+     * Reads the attributes of the class or one of its members. If they're part of the api, their
+     * generic signature, declared exceptions and runtime annotations are added to the abi.
+     */
+    private void readAttributes(
+            final DataInputStream in,
+            final String[] utf8s,
+            final int[] classNameIndexes,
+            final boolean isAbi)
+            throws IOException {
+        final int attributesCount = in.readUnsignedShort();
+        for (int i = 0; i < attributesCount; i++) {
+            final String attributeName = utf8s[in.readUnsignedShort()];
+            final int length = in.readInt();
+            if (isAbi && "Signature".equals(attributeName)) {
+                addDescriptor(abiReferences, utf8s[in.readUnsignedShort()]);
+            } else if (isAbi && "Exceptions".equals(attributeName)) {
+                final int exceptionsCount = in.readUnsignedShort();
+                for (int j = 0; j < exceptionsCount; j++) {
+                    addClassName(abiReferences, utf8s[classNameIndexes[in.readUnsignedShort()]]);
+                }
+            } else if (isAbi && "RuntimeVisibleAnnotations".equals(attributeName)) {
+                final int annotationsCount = in.readUnsignedShort();
+                for (int j = 0; j < annotationsCount; j++) {
+                    readAnnotation(in, utf8s);
+                }
+            } else {
+                skip(in, length);
+            }
+        }
+    }
+
+    private void readAnnotation(final DataInputStream in, final String[] utf8s)
+            throws IOException {
+        addDescriptor(abiReferences, utf8s[in.readUnsignedShort()]);
+        final int pairsCount = in.readUnsignedShort();
+        for (int i = 0; i < pairsCount; i++) {
+            in.readUnsignedShort(); // element name
+            readElementValue(in, utf8s);
+        }
+    }
+
+    private void readElementValue(final DataInputStream in, final String[] utf8s)
+            throws IOException {
+        final int tag = in.readUnsignedByte();
+        switch (tag) {
+            case 'e': // enum: its type, then the constant's name
+                addDescriptor(abiReferences, utf8s[in.readUnsignedShort()]);
+                in.readUnsignedShort();
+                break;
+            case 'c': // class literal, as a return descriptor
+                addDescriptor(abiReferences, utf8s[in.readUnsignedShort()]);
+                break;
+            case '@':
+                readAnnotation(in, utf8s);
+                break;
+            case '[':
+                final int valuesCount = in.readUnsignedShort();
+                for (int i = 0; i < valuesCount; i++) {
+                    readElementValue(in, utf8s);
+                }
+                break;
+            default: // primitives and strings, as a constant pool index
+                in.readUnsignedShort();
+                break;
+        }
+    }
+
+    /** DataInputStream.skipBytes may skip less than asked for, e.g. when reading from a jar */
+    private static void skip(final DataInputStream in, final int count) throws IOException {
+        int skipped = 0;
+        while (skipped < count) {
+            final int n = in.skipBytes(count - skipped);
+            if (n > 0) {
+                skipped += n;
+            } else {
+                in.readByte();
+                skipped++;
+            }
+        }
+    }
+
+    private void addClassName(final Set<String> names, final String className) {
+        if (className.startsWith("[")) {
+            addDescriptor(names, className);
+        } else {
+            names.add(className);
+        }
+    }
+
+    private void addDescriptor(final Set<String> names, final String descriptor) {
+        final Matcher matcher = DESCRIPTOR_CLASS.matcher(descriptor);
+        while (matcher.find()) {
+            names.add(matcher.group(1));
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.indeed.ossgradle.internal;
+
+import org.apache.commons.lang3.StringUtils;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.internal.tasks.compile.CompileJavaBuildOperationType.Result;
+import org.gradle.api.internal.tasks.compile.CompileJavaBuildOperationType.Result.AnnotationProcessorDetails;
+import org.gradle.api.logging.LogLevel;
+import org.gradle.api.tasks.compile.JavaCompile;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.OperationFinishEvent;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reports, for every JavaCompile that ran, whether it compiled incrementally, the reason for a
+ * full recompile, and the time spent in each annotation processor. A summary is written to
+ * build/reports/compile-diagnostics.txt in the root project at the end of the build.
+ *
+ * <p>Gradle only logs why it did a full recompile at info level. When the build runs with --info,
+ * the report uses that message. Otherwise the report has to guess from which class files the
+ * compile rewrote, and says so.
+ *
+ * <p>Enabled for all java projects by setting the gradle property indeed.compileDiagnostics=true.
+ */
+public class CompileDiagnosticsPlugin implements Plugin<Project> {
+    public static final String ENABLED_PROPERTY = "indeed.compileDiagnostics";
+    private static final String FULL_RECOMPILE_MESSAGE = "Full recompilation is required because ";
+    private static final String ANALYSIS_MESSAGE = ". Analysis took ";
+
+    private final Map<String, Map<Path, Long>> outputsBefore = new ConcurrentHashMap<>();
+    private final Map<String, List<AnnotationProcessorDetails>> processorDetails =
+            new ConcurrentHashMap<>();
+    private final Map<String, String> fullRecompileReasons = new ConcurrentHashMap<>();
+    private final Map<String, String> reports = new ConcurrentHashMap<>();
+
+    public static boolean isEnabled(final Project project) {
+        return "true".equals(String.valueOf(project.findProperty(ENABLED_PROPERTY)));
+    }
+
+    @Override
+    public void apply(final Project rootProject) {
+        IndeedOssUtil.assertRootProject(rootProject);
+
+        IndeedOssUtil.addBuildOperationListener(
+                rootProject,
+                new TaskAwareBuildOperationListener() {
+                    @Override
+                    protected void finished(
+                            @Nullable final String taskPath,
+                            final BuildOperationDescriptor descriptor,
+                            final OperationFinishEvent event) {
+                        if (taskPath != null && event.getResult() instanceof Result) {
+                            processorDetails.put(
+                                    taskPath,
+                                    ((Result) event.getResult()).getAnnotationProcessorDetails());
+                        }
+                    }
+                });
+
+        // These don't change the tasks themselves, unlike doFirst/doLast, so they don't affect
+        // up-to-date checks or caching of the compile tasks
+        rootProject
+                .getGradle()
+                .getTaskGraph()
+                .beforeTask(
+                        task -> {
+                            if (task instanceof JavaCompile) {
+                                outputsBefore.put(
+                                        task.getPath(), listClassFiles((JavaCompile) task));
+                                task.getLogging()
+                                        .addStandardOutputListener(
+                                                output ->
+                                                        captureFullRecompileReason(
+                                                                task.getPath(), output));
+                            }
+                        });
+        rootProject
+                .getGradle()
+                .getTaskGraph()
+                .afterTask(
+                        task -> {
+                            if (task instanceof JavaCompile && task.getState().getDidWork()) {
+                                final String report = diagnose((JavaCompile) task);
+                                reports.put(task.getPath(), report);
+                                task.getLogger().lifecycle(report);
+                            }
+                        });
+
+        rootProject.getGradle().buildFinished(result -> writeReport(rootProject));
+    }
+
+    private String diagnose(final JavaCompile task) {
+        final Map<Path, Long> before =
+                outputsBefore.getOrDefault(task.getPath(), Collections.emptyMap());
+        final Map<Path, Long> after = listClassFiles(task);
+        final long recompiled =
+                after.entrySet().stream()
+                        .filter(e -> !e.getValue().equals(before.get(e.getKey())))
+                        .count();
+
+        final List<String> nonIncrementalProcessors = new ArrayList<>();
+        final List<String> processorTimes = new ArrayList<>();
+        for (final AnnotationProcessorDetails processor :
+                processorDetails.getOrDefault(task.getPath(), Collections.emptyList())) {
+            if (processor.getType() == AnnotationProcessorDetails.Type.UNKNOWN) {
+                nonIncrementalProcessors.add(processor.getClassName());
+            }
+            processorTimes.add(
+                    String.format(
+                            "    %s (%s): %dms",
+                            processor.getClassName(),
+                            processor.getType().name().toLowerCase(),
+                            processor.getExecutionTimeInMillis()));
+        }
+
+        final StringBuilder report = new StringBuilder(task.getPath());
+        final String fullRecompileReason = fullRecompileReasons.get(task.getPath());
+        if (fullRecompileReason != null) {
+            report.append(": full recompile, because ").append(fullRecompileReason);
+        } else if (before.isEmpty()) {
+            report.append(": full recompile, because there was no previous output");
+        } else if (!task.getOptions().isIncremental()) {
+            report.append(": full recompile, because incremental compilation is disabled");
+        } else if (isInfoLogged(task)) {
+            // Gradle would have told us if it wasn't
+            report.append(": incremental");
+        } else if (recompiled < after.size()) {
+            // Gradle removes all previous classes when it does a full recompile, so if any
+            // survived from before, it probably was incremental
+            report.append(": probably incremental (guessed from the class files it rewrote)");
+        } else if (!nonIncrementalProcessors.isEmpty()) {
+            report.append(
+                            ": full recompile, probably because of non-incremental annotation"
+                                    + " processors ")
+                    .append(String.join(", ", nonIncrementalProcessors));
+        } else {
+            report.append(
+                    ": full recompile, for a reason only gradle knows"
+                            + " (run with --info to have it reported here)");
+        }
+        report.append(String.format(", %d of %d classes compiled", recompiled, after.size()));
+        for (final String processorTime : processorTimes) {
+            report.append('\n').append(processorTime);
+        }
+        return report.toString();
+    }
+
+    private void captureFullRecompileReason(final String taskPath, final CharSequence output) {
+        final String message = output.toString();
+        final int start = message.indexOf(FULL_RECOMPILE_MESSAGE);
+        if (start < 0) {
+            return;
+        }
+        String reason = message.substring(start + FULL_RECOMPILE_MESSAGE.length());
+        reason = StringUtils.substringBefore(reason, ANALYSIS_MESSAGE);
+        reason = StringUtils.substringBefore(reason, "\n").trim();
+        fullRecompileReasons.put(taskPath, reason);
+    }
+
+    private static boolean isInfoLogged(final JavaCompile task) {
+        final LogLevel logLevel = task.getProject().getGradle().getStartParameter().getLogLevel();
+        return logLevel == LogLevel.INFO || logLevel == LogLevel.DEBUG;
+    }
+
+    private void writeReport(final Project rootProject) {
+        if (reports.isEmpty()) {
+            return;
+        }
+        final String report =
+                reports.keySet().stream()
+                        .sorted()
+                        .map(reports::get)
+                        .collect(Collectors.joining("\n", "", "\n"));
+        final File reportFile =
+                new File(rootProject.getBuildDir(), "reports/compile-diagnostics.txt");
+        try {
+            Files.createDirectories(reportFile.getParentFile().toPath());
+            Files.write(reportFile.toPath(), report.getBytes(StandardCharsets.UTF_8));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        rootProject.getLogger().lifecycle("Compile diagnostics written to " + reportFile);
+        reports.clear();
+        fullRecompileReasons.clear();
+        outputsBefore.clear();
+        processorDetails.clear();
+    }
+
+    private static Map<Path, Long> listClassFiles(final JavaCompile task) {
+        final Path dir = task.getDestinationDirectory().get().getAsFile().toPath();
+        final Map<Path, Long> classFiles = new HashMap<>();
+        if (!Files.isDirectory(dir)) {
+            return classFiles;
+        }
+        try (final Stream<Path> files = Files.walk(dir)) {
+            files.filter(f -> f.toString().endsWith(".class"))
+                    .forEach(f -> classFiles.put(f, f.toFile().lastModified()));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return classFiles;
+    }
+}
@@ -6,13 +6,15 @@ import org.gradle.api.tasks.compile.JavaCompile;
 import org.gradle.api.tasks.javadoc.Javadoc;
 
 public class ConfigureJavaPlugin implements Plugin<Project> {
+    static final int BASE_RELEASE = 8;
+
     @Override
     public void apply(final Project project) {
         project.getTasks()
                 .withType(JavaCompile.class)
                 .configureEach(
                         task -> {
-                            task.getOptions().getRelease().set(8);
+                            task.getOptions().getRelease().set(BASE_RELEASE);
                             task.getOptions().setEncoding("UTF-8");
                         });
         project.getTasks()
@@ -21,5 +23,8 @@ public class ConfigureJavaPlugin implements Plugin<Project> {
                         task -> {
                             task.getOptions().setEncoding("UTF-8");
                         });
+        if (CompileDiagnosticsPlugin.isEnabled(project)) {
+            project.getRootProject().getPlugins().apply(CompileDiagnosticsPlugin.class);
+        }
     }
 }
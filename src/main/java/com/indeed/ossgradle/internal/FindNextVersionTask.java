@@ -1,7 +1,11 @@
 package com.indeed.ossgradle.internal;
 
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
+import groovy.json.JsonOutput;
+import org.apache.commons.lang3.StringUtils;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.options.Option;
@@ -9,11 +13,20 @@ import org.gradle.api.tasks.options.Option;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class FindNextVersionTask extends DefaultTask {
     private String group;
     private String name;
     private boolean isDev = false;
+    private List<String> modules = new ArrayList<>();
+    private String modulesFile;
 
     @Option(option = "group", description = "")
     public void setGroupOption(final String group) {
@@ -30,8 +43,30 @@ public class FindNextVersionTask extends DefaultTask {
         this.isDev = isDev;
     }
 
+    @Option(
+            option = "module",
+            description = "group:name of a module to look up, may be repeated for a batch lookup")
+    public void setModulesOption(final List<String> modules) {
+        this.modules = modules;
+    }
+
+    @Option(
+            option = "modules-file",
+            description = "File listing one group:name per line, for a batch lookup")
+    public void setModulesFileOption(final String modulesFile) {
+        this.modulesFile = modulesFile;
+    }
+
     @TaskAction
     public void run() throws IOException {
+        if (modules.isEmpty() && modulesFile == null) {
+            runSingle();
+        } else {
+            runBatch();
+        }
+    }
+
+    private void runSingle() throws IOException {
         final String nextVersion =
                 IndeedOssLibraryRootPlugin.calculateNextVersionFromIds(
                         getProject(),
@@ -42,4 +77,83 @@ public class FindNextVersionTask extends DefaultTask {
                 getProject().file("nextversion.txt").toPath(),
                 nextVersion.getBytes(StandardCharsets.UTF_8));
     }
+
+    /**
+     * Looks up every requested module in one resolution, and writes the latest and next version
+     * of each to nextversions.json. Unlike the single module mode, each module's next version is
+     * calculated on its own.
+     */
+    private void runBatch() throws IOException {
+        final Set<ModuleIdentifier> ids = new LinkedHashSet<>();
+        if (group != null && name != null) {
+            ids.add(DefaultModuleIdentifier.newId(group, name));
+        }
+        for (final String module : modules) {
+            ids.add(parseModule(module));
+        }
+        if (modulesFile != null) {
+            for (final String line :
+                    Files.readAllLines(getProject().file(modulesFile).toPath())) {
+                final String module = StringUtils.trim(StringUtils.substringBefore(line, "#"));
+                if (!module.isEmpty()) {
+                    ids.add(parseModule(module));
+                }
+            }
+        }
+
+        // All modules are looked up by a single resolution, so each module's time is attributed
+        // from the reads of its resources. This task's own build operation has already started,
+        // so the listener couldn't tell that reads belong to it, and counts all of them instead.
+        final ModuleReadListener readListener = new ModuleReadListener(ids);
+        IndeedOssUtil.addBuildOperationListener(getProject(), readListener);
+        final long start = System.currentTimeMillis();
+        final Map<ModuleIdentifier, String> latestVersions;
+        try {
+            latestVersions = IndeedOssLibraryRootPlugin.findLatestVersions(getProject(), ids);
+        } finally {
+            IndeedOssUtil.removeBuildOperationListener(getProject(), readListener);
+        }
+        final long lookupMillis = System.currentTimeMillis() - start;
+
+        final List<Map<String, Object>> results = new ArrayList<>();
+        for (final ModuleIdentifier id : ids) {
+            final String latestVersion = latestVersions.get(id);
+            final String nextVersion =
+                    IndeedOssLibraryRootPlugin.calculateNextVersionFromExistingVersions(
+                            latestVersion == null
+                                    ? Collections.emptyList()
+                                    : ImmutableList.of(
+                                            StringUtils.substringBefore(latestVersion, "-")),
+                            isDev);
+            getProject()
+                    .getLogger()
+                    .lifecycle(id.getGroup() + ":" + id.getName() + " " + nextVersion);
+
+            final Map<String, Object> result = new LinkedHashMap<>();
+            result.put("group", id.getGroup());
+            result.put("name", id.getName());
+            result.put("latestVersion", latestVersion);
+            result.put("nextVersion", nextVersion);
+            result.put("lookupMillis", readListener.getMillis(id));
+            results.add(result);
+        }
+
+        // Modules are read concurrently, so the whole lookup usually takes less than their sum
+        final Map<String, Object> output = new LinkedHashMap<>();
+        output.put("dev", isDev);
+        output.put("lookupMillis", lookupMillis);
+        output.put("modules", results);
+        Files.write(
+                getProject().file("nextversions.json").toPath(),
+                JsonOutput.prettyPrint(JsonOutput.toJson(output))
+                        .getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ModuleIdentifier parseModule(final String module) {
+        final List<String> split = Splitter.on(':').trimResults().splitToList(module);
+        if (split.size() != 2 || split.get(0).isEmpty() || split.get(1).isEmpty()) {
+            throw new IllegalArgumentException("Expected group:name but got: " + module);
+        }
+        return DefaultModuleIdentifier.newId(split.get(0), split.get(1));
+    }
 }
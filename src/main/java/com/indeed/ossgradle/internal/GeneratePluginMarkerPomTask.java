@@ -0,0 +1,120 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * Writes the POM of a gradle plugin marker publication, which only depends on the plugin's
+ * library. Gradle's own generator would capture the library version at configuration time, before
+ * we've calculated it, so the versions here are only read when the task runs. The POM is streamed
+ * straight to the file rather than built up as a document.
+ */
+@CacheableTask
+public abstract class GeneratePluginMarkerPomTask extends DefaultTask {
+    private static final String POM_NAMESPACE = "http://maven.apache.org/POM/4.0.0";
+    private static final String XSI_NAMESPACE = "http://www.w3.org/2001/XMLSchema-instance";
+    private static final String POM_SCHEMA_LOCATION =
+            POM_NAMESPACE + " https://maven.apache.org/xsd/maven-4.0.0.xsd";
+
+    @Input
+    public abstract Property<String> getMarkerGroupId();
+
+    @Input
+    public abstract Property<String> getMarkerArtifactId();
+
+    @Input
+    public abstract Property<String> getMarkerVersion();
+
+    @Input
+    @Optional
+    public abstract Property<String> getMarkerName();
+
+    @Input
+    @Optional
+    public abstract Property<String> getMarkerDescription();
+
+    @Input
+    public abstract Property<String> getPluginGroupId();
+
+    @Input
+    public abstract Property<String> getPluginArtifactId();
+
+    @Input
+    public abstract Property<String> getPluginVersion();
+
+    @OutputFile
+    public abstract RegularFileProperty getDestination();
+
+    @TaskAction
+    public void run() throws IOException, XMLStreamException {
+        try (final OutputStream out =
+                Files.newOutputStream(getDestination().get().getAsFile().toPath())) {
+            final XMLStreamWriter xml =
+                    XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+            xml.writeStartDocument("UTF-8", "1.0");
+            newline(xml, 0);
+            xml.writeStartElement("project");
+            xml.writeDefaultNamespace(POM_NAMESPACE);
+            xml.writeNamespace("xsi", XSI_NAMESPACE);
+            xml.writeAttribute("xsi", XSI_NAMESPACE, "schemaLocation", POM_SCHEMA_LOCATION);
+            element(xml, 1, "modelVersion", "4.0.0");
+            element(xml, 1, "groupId", getMarkerGroupId().get());
+            element(xml, 1, "artifactId", getMarkerArtifactId().get());
+            element(xml, 1, "version", getMarkerVersion().get());
+            element(xml, 1, "packaging", "pom");
+            if (getMarkerName().isPresent()) {
+                element(xml, 1, "name", getMarkerName().get());
+            }
+            if (getMarkerDescription().isPresent()) {
+                element(xml, 1, "description", getMarkerDescription().get());
+            }
+            newline(xml, 1);
+            xml.writeStartElement("dependencies");
+            newline(xml, 2);
+            xml.writeStartElement("dependency");
+            element(xml, 3, "groupId", getPluginGroupId().get());
+            element(xml, 3, "artifactId", getPluginArtifactId().get());
+            element(xml, 3, "version", getPluginVersion().get());
+            newline(xml, 2);
+            xml.writeEndElement();
+            newline(xml, 1);
+            xml.writeEndElement();
+            newline(xml, 0);
+            xml.writeEndElement();
+            newline(xml, 0);
+            xml.writeEndDocument();
+            xml.close();
+        }
+    }
+
+    private static void element(
+            final XMLStreamWriter xml, final int depth, final String name, final String value)
+            throws XMLStreamException {
+        newline(xml, depth);
+        xml.writeStartElement(name);
+        xml.writeCharacters(value);
+        xml.writeEndElement();
+    }
+
+    private static void newline(final XMLStreamWriter xml, final int depth)
+            throws XMLStreamException {
+        final StringBuilder indent = new StringBuilder("\n");
+        for (int i = 0; i < depth; i++) {
+            indent.append("  ");
+        }
+        xml.writeCharacters(indent.toString());
+    }
+}
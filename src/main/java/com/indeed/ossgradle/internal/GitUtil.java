@@ -4,7 +4,10 @@ import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
-import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.gradle.api.Project;
 import org.gradle.process.ExecResult;
@@ -13,24 +16,27 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class GitUtil {
+    private static final String ORIGIN_HEAD = Constants.R_REMOTES + "origin/" + Constants.HEAD;
 
     public static String getShortHash(final Project project) {
         final AtomicReference<String> hash = new AtomicReference<>("");
         withGit(
                 project,
                 git -> {
-                    final Iterator<RevCommit> revCommits =
-                            git.log().setMaxCount(1).call().iterator();
-                    if (revCommits.hasNext()) {
-                        final RevCommit revCommit = revCommits.next();
-                        hash.set(revCommit.abbreviate(7).name());
+                    // Resolve HEAD directly rather than walking the log. This only reads the ref,
+                    // so it works on shallow and partial (blob-less) clones without touching
+                    // any history or missing objects.
+                    final ObjectId head = git.getRepository().resolve(Constants.HEAD);
+                    if (head != null) {
+                        hash.set(head.abbreviate(7).name());
                         return;
                     }
-                    throw new GitRepositoryException("Unable to fetch latest commit from git log");
+                    throw new GitRepositoryException("Unable to resolve HEAD commit");
                 });
         return hash.get();
     }
@@ -83,7 +89,9 @@ public class GitUtil {
             throw new NotAGitRepositoryException();
         }
 
-        try (final Git git = Git.open(gitDir)) {
+        try (final Git git =
+                ReleaseMetrics.get(project)
+                        .time("git_open", Collections.emptyMap(), () -> Git.open(gitDir))) {
             func.accept(git);
         } catch (final RepositoryNotFoundException e) {
             // Currently jgit does not support "git worktree" and it will cause
@@ -109,7 +117,7 @@ public class GitUtil {
      */
     public static String getCurrentBranch(final Path path) {
         try (final Git git = Git.open(path.toFile())) {
-            return git.getRepository().getBranch();
+            return getCurrentBranch(git.getRepository(), System.getenv());
         } catch (final IOException e) {
             throw new GitRepositoryException(e);
         }
@@ -127,13 +135,17 @@ public class GitUtil {
     }
 
     public static String getCurrentBranch(final Project project) {
+        return getCurrentBranch(project, System.getenv());
+    }
+
+    static String getCurrentBranch(final Project project, final Map<String, String> env) {
         final String[] currentBranch = new String[1];
 
         withGit(
                 project,
                 git -> {
                     try {
-                        currentBranch[0] = git.getRepository().getBranch();
+                        currentBranch[0] = getCurrentBranch(git.getRepository(), env);
                     } catch (final IOException e) {
                         throw new RuntimeException(
                                 "Failed to resolve the abbreviation revision of HEAD");
@@ -143,7 +155,43 @@ public class GitUtil {
         return currentBranch[0];
     }
 
+    /**
+     * CI systems commonly check out the commit being built as a detached HEAD, in which case the
+     * repository only knows the commit hash. Fall back to the branch reported by the CI
+     * environment so that such builds are not mistaken for dev publishes.
+     */
+    private static String getCurrentBranch(
+            final Repository repository, final Map<String, String> env) throws IOException {
+        final String fullBranch = repository.getFullBranch();
+        if (fullBranch != null && fullBranch.startsWith(Constants.R_HEADS)) {
+            return Repository.shortenRefName(fullBranch);
+        }
+        final String ciBranch = IndeedOssLibraryRootPlugin.getCiBranch(env);
+        if (ciBranch != null) {
+            return ciBranch;
+        }
+        return repository.getBranch();
+    }
+
     public static String getDefaultBranch(final Project project) {
+        return getDefaultBranch(project, System.getenv());
+    }
+
+    static String getDefaultBranch(final Project project, final Map<String, String> env) {
+        return ReleaseMetrics.get(project)
+                .time(
+                        "default_branch_lookup",
+                        Collections.emptyMap(),
+                        () -> lookupDefaultBranch(project, env));
+    }
+
+    private static String lookupDefaultBranch(
+            final Project project, final Map<String, String> env) {
+        final String ciDefaultBranch = IndeedOssLibraryRootPlugin.getCiDefaultBranch(env);
+        if (ciDefaultBranch != null) {
+            return ciDefaultBranch;
+        }
+
         final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
         final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
         final ExecResult result =
@@ -155,13 +203,39 @@ public class GitUtil {
                                     "git remote show origin | awk '/HEAD branch/ {print $NF}'");
                             exec.setStandardOutput(stdout);
                             exec.setErrorOutput(stderr);
+                            exec.setIgnoreExitValue(true);
                         });
         final String output = StringUtils.trim(stdout.toString());
-        if (result.getExitValue() != 0 || output.isEmpty()) {
-            project.getLogger().lifecycle(stderr.toString());
-            project.getLogger().lifecycle(stderr.toString());
-            throw new IllegalStateException("Failed to get default branch");
+        if (result.getExitValue() == 0 && !output.isEmpty()) {
+            return output;
+        }
+
+        // origin/HEAD is only set when cloning, so it goes stale if the default branch is changed
+        // later. We only trust it when the remote can't be reached.
+        final AtomicReference<String> localDefaultBranch = new AtomicReference<>();
+        try {
+            withGit(
+                    project,
+                    git -> {
+                        final Ref originHead = git.getRepository().exactRef(ORIGIN_HEAD);
+                        if (originHead != null && originHead.isSymbolic()) {
+                            localDefaultBranch.set(
+                                    Repository.shortenRefName(originHead.getTarget().getName())
+                                            .substring("origin/".length()));
+                        }
+                    });
+        } catch (final NotAGitRepositoryException e) {
+            /* this is fine */
+        }
+        if (localDefaultBranch.get() != null) {
+            project.getLogger()
+                    .warn(
+                            "Failed to query the default branch of origin, using origin/HEAD: "
+                                    + localDefaultBranch.get());
+            return localDefaultBranch.get();
         }
-        return output;
+
+        project.getLogger().lifecycle(stderr.toString());
+        throw new IllegalStateException("Failed to get default branch");
     }
 }
@@ -0,0 +1,118 @@
+package com.indeed.ossgradle.internal;
+
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/** The cores and memory available to this build, taking container (cgroup) limits into account */
+class HardwareInfo {
+    private static final Path CGROUP = Paths.get("/sys/fs/cgroup");
+
+    private final int cores;
+    private final long memoryBytes;
+    private final boolean containerLimited;
+
+    private HardwareInfo(final int cores, final long memoryBytes, final boolean containerLimited) {
+        this.cores = cores;
+        this.memoryBytes = memoryBytes;
+        this.containerLimited = containerLimited;
+    }
+
+    public int getCores() {
+        return cores;
+    }
+
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public boolean isContainerLimited() {
+        return containerLimited;
+    }
+
+    public static HardwareInfo detect() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long memory = Long.MAX_VALUE;
+        final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            memory = ((com.sun.management.OperatingSystemMXBean) os).getTotalPhysicalMemorySize();
+        }
+        boolean containerLimited = false;
+
+        // Newer jvms already apply these limits themselves, but java 8 before 8u191 doesn't
+        final Long cgroupMemory = readCgroupMemoryLimit();
+        if (cgroupMemory != null && cgroupMemory < memory) {
+            memory = cgroupMemory;
+            containerLimited = true;
+        }
+        final Integer cgroupCores = readCgroupCpuLimit();
+        if (cgroupCores != null && cgroupCores < cores) {
+            cores = cgroupCores;
+            containerLimited = true;
+        }
+        return new HardwareInfo(cores, memory, containerLimited);
+    }
+
+    @Nullable
+    private static Long readCgroupMemoryLimit() {
+        // cgroup v2, then v1. v1 reports a huge number when there's no limit, which the
+        // comparison against physical memory takes care of.
+        String limit = read(CGROUP.resolve("memory.max"));
+        if (limit == null) {
+            limit = read(CGROUP.resolve("memory/memory.limit_in_bytes"));
+        }
+        if (limit == null || !StringUtils.isNumeric(limit)) {
+            return null;
+        }
+        return Long.parseLong(limit);
+    }
+
+    @Nullable
+    private static Integer readCgroupCpuLimit() {
+        long quota;
+        long period;
+        final String v2 = read(CGROUP.resolve("cpu.max"));
+        if (v2 != null) {
+            final String[] split = v2.split(" ");
+            if (split.length != 2 || !StringUtils.isNumeric(split[0])) {
+                return null;
+            }
+            quota = Long.parseLong(split[0]);
+            period = Long.parseLong(split[1]);
+        } else {
+            final String v1Quota = read(CGROUP.resolve("cpu/cpu.cfs_quota_us"));
+            final String v1Period = read(CGROUP.resolve("cpu/cpu.cfs_period_us"));
+            if (v1Quota == null
+                    || v1Period == null
+                    || !StringUtils.isNumeric(v1Quota)
+                    || !StringUtils.isNumeric(v1Period)) {
+                return null;
+            }
+            quota = Long.parseLong(v1Quota);
+            period = Long.parseLong(v1Period);
+        }
+        if (quota <= 0 || period <= 0) {
+            return null;
+        }
+        return (int) Math.max(1, (quota + period - 1) / period);
+    }
+
+    @Nullable
+    private static String read(final Path file) {
+        if (!Files.isReadable(file)) {
+            return null;
+        }
+        try {
+            return new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+}
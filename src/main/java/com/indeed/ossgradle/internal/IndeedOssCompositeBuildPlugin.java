@@ -0,0 +1,113 @@
+package com.indeed.ossgradle.internal;
+
+import com.google.common.base.Splitter;
+import org.gradle.api.Plugin;
+import org.gradle.api.initialization.Settings;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Provider;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Includes checked-out sibling indeed oss repositories as composite builds, so that changes to
+ * one library can be developed against another without a local publish round trip.
+ *
+ * <p>Siblings are either listed explicitly with {@code indeed.oss.composite.paths} (comma
+ * separated), or discovered in the directory given by {@code indeed.oss.composite.workspace},
+ * which includes every build there that applies com.indeed.oss. Both are gradle properties, so
+ * they're usually set in ~/.gradle/gradle.properties.
+ *
+ * <p>Gradle substitutes dependencies on an included build's modules by group and project name.
+ * {@link IndeedOssLibraryPlugin} takes care of matching the group of included libraries to {@link
+ * IndeedOssLibraryExtension}.
+ */
+public class IndeedOssCompositeBuildPlugin implements Plugin<Settings> {
+    private static final Logger logger = Logging.getLogger(IndeedOssCompositeBuildPlugin.class);
+
+    @Override
+    public void apply(final Settings settings) {
+        if (settings.getGradle().getParent() != null) {
+            // The siblings are already included by the outermost build, and gradle shares them
+            // with every build in the composite
+            return;
+        }
+        final Set<File> builds = new LinkedHashSet<>();
+
+        final String paths = gradleProperty(settings, "indeed.oss.composite.paths");
+        if (paths != null) {
+            for (final String path :
+                    Splitter.on(',').trimResults().omitEmptyStrings().split(paths)) {
+                builds.add(resolve(settings, path));
+            }
+        }
+
+        final String workspace = gradleProperty(settings, "indeed.oss.composite.workspace");
+        if (workspace != null) {
+            final File[] siblings = resolve(settings, workspace).listFiles(File::isDirectory);
+            if (siblings != null) {
+                Arrays.stream(siblings)
+                        .sorted(Comparator.comparing(File::getName))
+                        .filter(IndeedOssCompositeBuildPlugin::isIndeedOssBuild)
+                        .forEach(builds::add);
+            }
+        }
+
+        for (final File build : builds) {
+            if (build.equals(settings.getRootDir())) {
+                continue;
+            }
+            if (!build.isDirectory()) {
+                logger.warn("Skipping missing composite build: " + build);
+                continue;
+            }
+            logger.lifecycle("Including sibling build: " + build);
+            settings.includeBuild(build);
+        }
+    }
+
+    private static String gradleProperty(final Settings settings, final String name) {
+        final Provider<String> property =
+                settings.getProviders().gradleProperty(name).forUseAtConfigurationTime();
+        return property.getOrNull();
+    }
+
+    private static File resolve(final Settings settings, final String path) {
+        final File file = new File(path);
+        if (file.isAbsolute()) {
+            return file;
+        }
+        return new File(settings.getRootDir(), path).toPath().normalize().toFile();
+    }
+
+    private static boolean isIndeedOssBuild(final File dir) {
+        for (final String name :
+                Arrays.asList(
+                        "settings.gradle",
+                        "settings.gradle.kts",
+                        "build.gradle",
+                        "build.gradle.kts")) {
+            final File file = new File(dir, name);
+            if (!file.isFile()) {
+                continue;
+            }
+            try {
+                if (new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)
+                        .contains("com.indeed.oss")) {
+                    return true;
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,18 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.Project;
+import org.gradle.api.provider.Property;
+
+public class IndeedOssDependencyHygieneExtension {
+    private final Property<Boolean> failOnIssues;
+
+    public IndeedOssDependencyHygieneExtension(final Project project) {
+        failOnIssues = project.getObjects().property(Boolean.class);
+        failOnIssues.set(false);
+    }
+
+    /** Whether analyzeDependencies fails the build when it finds issues, or only reports them */
+    public Property<Boolean> getFailOnIssues() {
+        return failOnIssues;
+    }
+}
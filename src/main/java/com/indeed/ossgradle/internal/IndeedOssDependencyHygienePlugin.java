@@ -0,0 +1,159 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.Named;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.ArtifactCollection;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.ExternalModuleDependency;
+import org.gradle.api.artifacts.ModuleDependency;
+import org.gradle.api.artifacts.ProjectDependency;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.attributes.AttributeContainer;
+import org.gradle.api.attributes.Category;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.plugins.JavaPluginExtension;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.SourceSetContainer;
+import org.gradle.language.base.plugins.LifecycleBasePlugin;
+
+import java.io.File;
+import java.util.Set;
+import java.util.TreeSet;
+
+/** Adds analyzeDependencies, which checks declared dependencies against the bytecode. */
+public class IndeedOssDependencyHygienePlugin implements Plugin<Project> {
+    @Override
+    public void apply(final Project project) {
+        final IndeedOssDependencyHygieneExtension ext =
+                project.getExtensions()
+                        .create(
+                                "indeedDependencyHygiene",
+                                IndeedOssDependencyHygieneExtension.class,
+                                project);
+        project.getPlugins().withType(JavaPlugin.class, p -> configure(project, ext));
+    }
+
+    private static void configure(
+            final Project project, final IndeedOssDependencyHygieneExtension ext) {
+        final SourceSetContainer sourceSets =
+                project.getExtensions().getByType(JavaPluginExtension.class).getSourceSets();
+        final SourceSet main = sourceSets.getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+        final SourceSet test = sourceSets.getByName(SourceSet.TEST_SOURCE_SET_NAME);
+
+        project.getTasks()
+                .register(
+                        "analyzeDependencies",
+                        AnalyzeDependenciesTask.class,
+                        task -> {
+                            task.setDescription(
+                                    "Reports unused, undeclared and wrongly scoped dependencies");
+                            task.setGroup(LifecycleBasePlugin.VERIFICATION_GROUP);
+                            task.getMainClasses().from(main.getOutput().getClassesDirs());
+                            task.getTestClasses().from(test.getOutput().getClassesDirs());
+                            task.setMainClasspathArtifacts(
+                                    artifacts(
+                                            project,
+                                            main.getCompileClasspathConfigurationName()));
+                            task.setTestClasspathArtifacts(
+                                    artifacts(
+                                            project,
+                                            test.getCompileClasspathConfigurationName()));
+                            task.getDeclaredApi()
+                                    .set(
+                                            declared(
+                                                    project,
+                                                    main.getApiConfigurationName(),
+                                                    main.getCompileOnlyApiConfigurationName()));
+                            task.getDeclaredImplementation()
+                                    .set(
+                                            declared(
+                                                    project,
+                                                    main.getImplementationConfigurationName(),
+                                                    main.getCompileOnlyConfigurationName()));
+                            task.getDeclaredTest()
+                                    .set(
+                                            declared(
+                                                    project,
+                                                    test.getImplementationConfigurationName(),
+                                                    test.getCompileOnlyConfigurationName()));
+                            task.getCheckApi()
+                                    .set(
+                                            project.getConfigurations()
+                                                            .findByName(
+                                                                    main.getApiConfigurationName())
+                                                    != null);
+                            task.getFailOnIssues().set(ext.getFailOnIssues());
+                            task.getReport()
+                                    .set(
+                                            new File(
+                                                    project.getBuildDir(),
+                                                    "reports/dependency-hygiene.txt"));
+                        });
+        project.getTasks()
+                .named(LifecycleBasePlugin.CHECK_TASK_NAME)
+                .configure(task -> task.dependsOn("analyzeDependencies"));
+    }
+
+    private static ArtifactCollection artifacts(
+            final Project project, final String configurationName) {
+        return project.getConfigurations()
+                .getByName(configurationName)
+                .getIncoming()
+                .artifactView(view -> view.setLenient(true))
+                .getArtifacts();
+    }
+
+    private static Provider<Set<String>> declared(
+            final Project project, final String... configurationNames) {
+        return project.provider(
+                () -> {
+                    final Set<String> declared = new TreeSet<>();
+                    for (final String name : configurationNames) {
+                        final Configuration configuration =
+                                project.getConfigurations().findByName(name);
+                        if (configuration == null) {
+                            continue;
+                        }
+                        for (final Dependency dep : configuration.getDependencies()) {
+                            if (isPlatform(dep)) {
+                                // Platforms only constrain versions, they never contribute
+                                // classes, so they'd always look unused
+                                continue;
+                            }
+                            if (dep instanceof ProjectDependency) {
+                                declared.add(
+                                        "project "
+                                                + ((ProjectDependency) dep)
+                                                        .getDependencyProject()
+                                                        .getPath());
+                            } else if (dep instanceof ExternalModuleDependency) {
+                                declared.add(dep.getGroup() + ":" + dep.getName());
+                            }
+                        }
+                    }
+                    return declared;
+                });
+    }
+
+    /** Whether this is a {@code platform(...)} or {@code enforcedPlatform(...)} dependency */
+    private static boolean isPlatform(final Dependency dep) {
+        if (!(dep instanceof ModuleDependency)) {
+            return false;
+        }
+        final AttributeContainer attributes = ((ModuleDependency) dep).getAttributes();
+        for (final Attribute<?> attribute : attributes.keySet()) {
+            // Matched by name, since the value may be a plain string rather than a Category
+            if (Category.CATEGORY_ATTRIBUTE.getName().equals(attribute.getName())) {
+                final Object value = attributes.getAttribute(attribute);
+                final String category =
+                        value instanceof Named ? ((Named) value).getName() : String.valueOf(value);
+                return Category.REGULAR_PLATFORM.equals(category)
+                        || Category.ENFORCED_PLATFORM.equals(category);
+            }
+        }
+        return false;
+    }
+}
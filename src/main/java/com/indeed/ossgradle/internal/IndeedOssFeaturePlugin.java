@@ -18,6 +18,10 @@ public class IndeedOssFeaturePlugin implements Plugin<Project> {
                     .put("find-next-version", FindNextVersionPlugin.class)
                     .put("java", IndeedOssJavaProjectPlugin.class)
                     .put("spotless", IndeedSpotlessPlugin.class)
+                    .put("multi-release", IndeedOssMultiReleasePlugin.class)
+                    .put("jmh", IndeedOssJmhPlugin.class)
+                    .put("dependency-hygiene", IndeedOssDependencyHygienePlugin.class)
+                    .put("jvm-tuning", IndeedOssJvmTuningPlugin.class)
                     .build();
 
     private Project project;
@@ -1,16 +1,141 @@
 package com.indeed.ossgradle.internal;
 
+import com.google.common.collect.ImmutableList;
 import com.gradle.publish.PublishPlugin;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.plugins.JavaPluginExtension;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.SourceSetContainer;
+import org.gradle.api.tasks.TaskProvider;
+import org.gradle.api.tasks.testing.Test;
+import org.gradle.api.tasks.testing.junitplatform.JUnitPlatformOptions;
+import org.gradle.language.base.plugins.LifecycleBasePlugin;
+import org.gradle.plugin.devel.GradlePluginDevelopmentExtension;
 import org.gradle.plugin.devel.plugins.JavaGradlePluginPlugin;
 
+import java.io.File;
+import java.util.List;
+
 /** Applied when the current project is an indeed gradle plugin */
 public class IndeedOssGradlePluginPlugin implements Plugin<Project> {
+    private static final String FUNCTIONAL_TEST = "functionalTest";
+    private static final String WARM_TEST_KIT = "warmTestKit";
+    // Keep in sync with build.gradle
+    private static final String PLUGIN_PUBLISH_VERSION = "0.19.0";
+
+    /** What publishing a gradle plugin fetches from the plugin portal, for warming caches */
+    static final List<String> PLUGIN_PORTAL_DEPENDENCIES =
+            ImmutableList.of(
+                    "com.gradle.plugin-publish:com.gradle.plugin-publish.gradle.plugin:"
+                            + PLUGIN_PUBLISH_VERSION);
+
     @Override
     public void apply(final Project project) {
         project.getPlugins().apply(JavaGradlePluginPlugin.class);
         project.getPlugins().apply(PublishPlugin.class);
         project.getPlugins().apply(IndeedOssLibraryPlugin.class);
+        configureFunctionalTests(project);
+    }
+
+    /**
+     * Adds a functionalTest source set for TestKit tests, which gets the plugin under test on its
+     * classpath, and the same test libraries as the unit tests.
+     *
+     * <p>TestKit otherwise keeps its gradle user home in the temp directory, which CI agents wipe,
+     * so every run downloads dependencies and starts daemons all over again. All forks share one
+     * TestKit directory in the project's .gradle directory instead, so the daemons and caches
+     * started by one test are reused by the next test, fork and run.
+     */
+    private static void configureFunctionalTests(final Project project) {
+        final SourceSetContainer sourceSets =
+                project.getExtensions().getByType(JavaPluginExtension.class).getSourceSets();
+        final SourceSet main = sourceSets.getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+        final SourceSet test = sourceSets.getByName(SourceSet.TEST_SOURCE_SET_NAME);
+        final SourceSet functionalTest = sourceSets.create(FUNCTIONAL_TEST);
+
+        project.getConfigurations()
+                .getByName(functionalTest.getImplementationConfigurationName())
+                .extendsFrom(
+                        project.getConfigurations()
+                                .getByName(test.getImplementationConfigurationName()));
+        project.getConfigurations()
+                .getByName(functionalTest.getRuntimeOnlyConfigurationName())
+                .extendsFrom(
+                        project.getConfigurations()
+                                .getByName(test.getRuntimeOnlyConfigurationName()));
+        project.getDependencies()
+                .add(
+                        functionalTest.getImplementationConfigurationName(),
+                        project.getDependencies().gradleTestKit());
+        functionalTest.setCompileClasspath(
+                project.files(main.getOutput(), functionalTest.getCompileClasspath()));
+        functionalTest.setRuntimeClasspath(
+                project.files(
+                        functionalTest.getOutput(),
+                        main.getOutput(),
+                        functionalTest.getRuntimeClasspath()));
+        // Adds the plugin-under-test metadata to the source set's runtime classpath
+        project.getExtensions()
+                .getByType(GradlePluginDevelopmentExtension.class)
+                .testSourceSets(test, functionalTest);
+
+        final File testKitDir = new File(project.getRootDir(), ".gradle/testkit");
+        // Each TestKit build runs in its own daemon, so the forks mostly wait on those rather
+        // than use cpu themselves
+        final int forks = Math.max(1, HardwareInfo.detect().getCores() / 2);
+        final TaskProvider<WarmTestKitTask> warmTestKit =
+                project.getTasks()
+                        .register(
+                                WARM_TEST_KIT,
+                                WarmTestKitTask.class,
+                                task -> {
+                                    task.setDescription(
+                                            "Starts the TestKit daemons the functional tests use");
+                                    task.getTestKitDir().set(testKitDir);
+                                    task.getDaemons().set(forks);
+                                    task.getJavaLauncher()
+                                            .set(
+                                                    project.getTasks()
+                                                            .named(FUNCTIONAL_TEST, Test.class)
+                                                            .flatMap(Test::getJavaLauncher));
+                                    task.getTestKitClasspath()
+                                            .from(
+                                                    project.getConfigurations()
+                                                            .detachedConfiguration(
+                                                                    project.getDependencies()
+                                                                            .gradleTestKit()));
+                                });
+        project.getTasks()
+                .register(
+                        FUNCTIONAL_TEST,
+                        Test.class,
+                        task -> {
+                            task.setDescription("Runs the TestKit functional tests");
+                            task.setGroup(LifecycleBasePlugin.VERIFICATION_GROUP);
+                            task.setTestClassesDirs(functionalTest.getOutput().getClassesDirs());
+                            task.setClasspath(functionalTest.getRuntimeClasspath());
+                            task.shouldRunAfter(JavaPlugin.TEST_TASK_NAME);
+                            task.setMaxParallelForks(forks);
+                            task.getJvmArgumentProviders()
+                                    .add(new TestKitDirArgumentProvider(testKitDir));
+                            task.dependsOn(warmTestKit);
+                        });
+        project.getTasks()
+                .named(LifecycleBasePlugin.CHECK_TASK_NAME)
+                .configure(task -> task.dependsOn(FUNCTIONAL_TEST));
+
+        IndeedOssUtil.afterEvaluate(
+                project,
+                () -> {
+                    final Test unitTest =
+                            (Test) project.getTasks().getByName(JavaPlugin.TEST_TASK_NAME);
+                    if (unitTest.getOptions() instanceof JUnitPlatformOptions) {
+                        project.getTasks()
+                                .named(FUNCTIONAL_TEST, Test.class)
+                                .configure(Test::useJUnitPlatform);
+                    }
+                });
     }
 }
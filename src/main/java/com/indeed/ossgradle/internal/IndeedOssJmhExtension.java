@@ -0,0 +1,62 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.Project;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+
+public class IndeedOssJmhExtension {
+    private final Property<String> jmhVersion;
+    private final Property<Integer> forks;
+    private final Property<Integer> warmupIterations;
+    private final Property<Integer> iterations;
+    private final ListProperty<String> includes;
+    private final Property<Double> regressionThreshold;
+
+    public IndeedOssJmhExtension(final Project project) {
+        jmhVersion = project.getObjects().property(String.class);
+        jmhVersion.set("1.35");
+
+        forks = project.getObjects().property(Integer.class);
+        forks.set(1);
+
+        warmupIterations = project.getObjects().property(Integer.class);
+        warmupIterations.set(3);
+
+        iterations = project.getObjects().property(Integer.class);
+        iterations.set(5);
+
+        includes = project.getObjects().listProperty(String.class);
+
+        regressionThreshold = project.getObjects().property(Double.class);
+        regressionThreshold.set(0.1);
+    }
+
+    public Property<String> getJmhVersion() {
+        return jmhVersion;
+    }
+
+    public Property<Integer> getForks() {
+        return forks;
+    }
+
+    public Property<Integer> getWarmupIterations() {
+        return warmupIterations;
+    }
+
+    public Property<Integer> getIterations() {
+        return iterations;
+    }
+
+    /** Regexes of the benchmarks to run. Runs all benchmarks if empty. */
+    public ListProperty<String> getIncludes() {
+        return includes;
+    }
+
+    /**
+     * How much worse than the latest published version a benchmark may score before jmhCompare
+     * fails, as a fraction of the published score.
+     */
+    public Property<Double> getRegressionThreshold() {
+        return regressionThreshold;
+    }
+}
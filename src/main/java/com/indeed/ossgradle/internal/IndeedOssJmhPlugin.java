@@ -0,0 +1,191 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.api.plugins.JavaPluginExtension;
+import org.gradle.api.tasks.JavaExec;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.SourceSetContainer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adds a jmh source set to a library, with tasks to run its benchmarks against the current code
+ * (jmh), against the latest published version of the library (jmhBaseline), and to compare the
+ * two (jmhCompare). Results are written as json to build/reports/jmh.
+ */
+public class IndeedOssJmhPlugin implements Plugin<Project> {
+    private static final String JMH_GROUP = "benchmark";
+
+    @Override
+    public void apply(final Project project) {
+        project.getPlugins().apply(IndeedOssLibraryPlugin.class);
+        final IndeedOssJmhExtension ext =
+                project.getExtensions().create("indeedJmh", IndeedOssJmhExtension.class, project);
+
+        final SourceSetContainer sourceSets =
+                project.getExtensions().getByType(JavaPluginExtension.class).getSourceSets();
+        final SourceSet main = sourceSets.getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+        final SourceSet jmh = sourceSets.create("jmh");
+
+        // Benchmarks see the library and its dependencies, but only jmh's own configurations hold
+        // benchmark dependencies, so that jmhBaseline can swap out the library.
+        final Configuration jmhImplementation =
+                project.getConfigurations().getByName(jmh.getImplementationConfigurationName());
+        final Configuration jmhRuntimeOnly =
+                project.getConfigurations().getByName(jmh.getRuntimeOnlyConfigurationName());
+        jmhImplementation
+                .getDependencies()
+                .addLater(
+                        ext.getJmhVersion()
+                                .map(
+                                        version ->
+                                                project.getDependencies()
+                                                        .create(
+                                                                "org.openjdk.jmh:jmh-core:"
+                                                                        + version)));
+        project.getConfigurations()
+                .getByName(jmh.getAnnotationProcessorConfigurationName())
+                .getDependencies()
+                .addLater(
+                        ext.getJmhVersion()
+                                .map(
+                                        version ->
+                                                project.getDependencies()
+                                                        .create(
+                                                                "org.openjdk.jmh:jmh-generator-annprocess:"
+                                                                        + version)));
+        jmh.setCompileClasspath(
+                project.files(
+                        main.getOutput(), main.getCompileClasspath(), jmh.getCompileClasspath()));
+        jmh.setRuntimeClasspath(
+                project.files(
+                        jmh.getOutput(),
+                        main.getOutput(),
+                        main.getRuntimeClasspath(),
+                        jmh.getRuntimeClasspath()));
+
+        final Configuration jmhBaseline = project.getConfigurations().create("jmhBaseline");
+        jmhBaseline.setCanBeConsumed(false);
+        jmhBaseline.extendsFrom(jmhImplementation, jmhRuntimeOnly);
+
+        final File reportsDir = new File(project.getBuildDir(), "reports/jmh");
+        final File results = new File(reportsDir, "results.json");
+        final File baselineResults = new File(reportsDir, "baseline.json");
+
+        project.getTasks()
+                .register(
+                        "jmh",
+                        JavaExec.class,
+                        task -> {
+                            task.setDescription("Runs the jmh benchmarks");
+                            configureJmhTask(task, ext, jmh.getRuntimeClasspath(), results);
+                        });
+        project.getTasks()
+                .register(
+                        "jmhBaseline",
+                        JavaExec.class,
+                        task -> {
+                            task.setDescription(
+                                    "Runs the jmh benchmarks against the latest published version");
+                            configureJmhTask(
+                                    task,
+                                    ext,
+                                    project.files(jmh.getOutput(), jmhBaseline),
+                                    baselineResults);
+                        });
+        project.getTasks()
+                .register(
+                        "jmhCompare",
+                        JmhCompareTask.class,
+                        task -> {
+                            task.setDescription(
+                                    "Fails if benchmarks regressed against the latest published version");
+                            task.setGroup(JMH_GROUP);
+                            task.dependsOn("jmh", "jmhBaseline");
+                            task.getResults().set(results);
+                            task.getBaselineResults().set(baselineResults);
+                            task.getRegressionThreshold().set(ext.getRegressionThreshold());
+                        });
+
+        // Only look up the published version if we're actually going to run against it
+        final String baselineTaskPath =
+                (project == project.getRootProject() ? "" : project.getPath()) + ":jmhBaseline";
+        project.getGradle()
+                .getTaskGraph()
+                .whenReady(
+                        graph -> {
+                            if (graph.hasTask(baselineTaskPath)) {
+                                jmhBaseline
+                                        .getDependencies()
+                                        .add(
+                                                project.getDependencies()
+                                                        .create(findBaselineVersion(project)));
+                            }
+                        });
+    }
+
+    private static void configureJmhTask(
+            final JavaExec task,
+            final IndeedOssJmhExtension ext,
+            final FileCollection classpath,
+            final File resultFile) {
+        task.setGroup(JMH_GROUP);
+        task.getMainClass().set("org.openjdk.jmh.Main");
+        task.setClasspath(classpath);
+        task.getOutputs().file(resultFile);
+        task.getOutputs().upToDateWhen(t -> false);
+        task.getArgumentProviders()
+                .add(
+                        () -> {
+                            final List<String> args = new ArrayList<>(ext.getIncludes().get());
+                            args.add("-f");
+                            args.add(String.valueOf(ext.getForks().get()));
+                            args.add("-wi");
+                            args.add(String.valueOf(ext.getWarmupIterations().get()));
+                            args.add("-i");
+                            args.add(String.valueOf(ext.getIterations().get()));
+                            args.add("-rf");
+                            args.add("json");
+                            args.add("-rff");
+                            args.add(resultFile.getAbsolutePath());
+                            return args;
+                        });
+        task.doFirst(t -> resultFile.getParentFile().mkdirs());
+    }
+
+    /**
+     * Looks up the latest version of every library in the build, like a publish does, since
+     * versions can only be looked up once per build. That lookup filters the root project's
+     * repositories, which gradle only allows before they've been used, so this has to run before
+     * anything resolves the root project's configurations. The task graph is ready before any
+     * task runs, but a local publish in the same build hashes resolved classpaths while
+     * configuring, so running jmhBaseline together with publish fails in a single-project build.
+     */
+    private static String findBaselineVersion(final Project project) {
+        final IndeedOssLibraryExtension libraryExt =
+                project.getExtensions().getByType(IndeedOssLibraryExtension.class);
+        final ModuleIdentifier id =
+                DefaultModuleIdentifier.newId(
+                        libraryExt.getGroup().get(), libraryExt.getName().get());
+        final String version =
+                IndeedOssLibraryRootPlugin.findLatestVersions(
+                                project.getRootProject(),
+                                IndeedOssLibraryRootPlugin.getPublishedModuleIds(
+                                        project.getGradle()))
+                        .get(id);
+        if (version == null) {
+            throw new GradleException(
+                    "There is no published version of " + id + " to compare benchmarks against");
+        }
+        project.getLogger().lifecycle("Comparing benchmarks against " + id + ":" + version);
+        return id.getGroup() + ":" + id.getName() + ":" + version;
+    }
+}
@@ -0,0 +1,54 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.plugins.ExtraPropertiesExtension;
+import org.gradle.api.tasks.compile.JavaCompile;
+import org.gradle.api.tasks.testing.Test;
+
+/**
+ * Sizes compiler jvms, test forks and the kotlin daemon from the cores and memory available to
+ * the build, including container limits on CI. Compiler heaps and kotlin daemon settings a project
+ * sets itself are left alone. Test forks are only a default: gradle can't tell an explicit
+ * maxParallelForks of 1 from its own default, so projects that want a different value set it
+ * after activating this feature.
+ */
+public class IndeedOssJvmTuningPlugin implements Plugin<Project> {
+    private static final String KOTLIN_DAEMON_JVMARGS = "kotlin.daemon.jvmargs";
+
+    @Override
+    public void apply(final Project project) {
+        final IndeedOssJvmTuningRootPlugin rootPlugin =
+                project.getRootProject().getPlugins().apply(IndeedOssJvmTuningRootPlugin.class);
+
+        if (rootPlugin.shouldForkCompiler()) {
+            project.getTasks()
+                    .withType(JavaCompile.class)
+                    .configureEach(
+                            task -> {
+                                task.getOptions().setFork(true);
+                                if (task.getOptions().getForkOptions().getMemoryMaximumSize()
+                                        == null) {
+                                    task.getOptions()
+                                            .getForkOptions()
+                                            .setMemoryMaximumSize(
+                                                    rootPlugin.getCompilerHeapMb() + "m");
+                                }
+                            });
+        }
+
+        project.getTasks()
+                .withType(Test.class)
+                .configureEach(
+                        // Runs before any configuration the build script adds later, which
+                        // therefore wins
+                        task -> task.setMaxParallelForks(rootPlugin.getMaxTestForks()));
+
+        // The kotlin plugin reads this as a project property
+        if (!project.hasProperty(KOTLIN_DAEMON_JVMARGS)) {
+            project.getExtensions()
+                    .getByType(ExtraPropertiesExtension.class)
+                    .set(KOTLIN_DAEMON_JVMARGS, "-Xmx" + rootPlugin.getCompilerHeapMb() + "m");
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Works out jvm and parallelism settings from the hardware the build runs on, registers
+ * writeRecommendedGradleProperties, and reports how much of the build the daemon spent in GC.
+ */
+public class IndeedOssJvmTuningRootPlugin implements Plugin<Project> {
+    private static final long MB = 1024 * 1024;
+    // Gradle's own default for forked test jvms
+    private static final long TEST_HEAP_MB = 512;
+    private static final double GC_PRESSURE_WARNING = 0.1;
+
+    private HardwareInfo hardware;
+    private long gcMillisAtStart;
+    private long nanosAtStart;
+
+    @Override
+    public void apply(final Project rootProject) {
+        IndeedOssUtil.assertRootProject(rootProject);
+        hardware = HardwareInfo.detect();
+        gcMillisAtStart = getGcMillis();
+        nanosAtStart = System.nanoTime();
+
+        rootProject
+                .getTasks()
+                .register(
+                        "writeRecommendedGradleProperties",
+                        WriteRecommendedGradlePropertiesTask.class,
+                        task -> {
+                            task.setDescription(
+                                    "Writes gradle.properties settings suited to this machine");
+                            task.getCores().set(hardware.getCores());
+                            task.getMemoryMb().set(hardware.getMemoryBytes() / MB);
+                            task.getContainerLimited().set(hardware.isContainerLimited());
+                            task.getDaemonHeapMb().set(getDaemonHeapMb());
+                            task.getCompilerHeapMb().set(getCompilerHeapMb());
+                            task.getOutputFile()
+                                    .set(
+                                            new File(
+                                                    rootProject.getBuildDir(),
+                                                    "recommended-gradle.properties"));
+                            task.doLast(t -> reportGcPressure(t.getLogger(), false));
+                        });
+
+        rootProject
+                .getGradle()
+                .buildFinished(result -> reportGcPressure(rootProject.getLogger(), true));
+    }
+
+    /** A quarter of the memory, which leaves room for workers, test jvms and the os */
+    public long getDaemonHeapMb() {
+        return clamp(hardware.getMemoryBytes() / MB / 4, 512, 4096);
+    }
+
+    public long getCompilerHeapMb() {
+        return clamp(hardware.getMemoryBytes() / MB / 8, 256, 2048);
+    }
+
+    /**
+     * Half the cores, since each test jvm also runs gc and jit threads, and no more than a half of
+     * the memory can hold.
+     */
+    public int getMaxTestForks() {
+        final long byMemory = hardware.getMemoryBytes() / MB / 2 / TEST_HEAP_MB;
+        return (int) Math.max(1, Math.min(hardware.getCores() / 2, byMemory));
+    }
+
+    /**
+     * Compiling in the daemon is fastest, but if the daemon was started with less heap than we'd
+     * recommend, large compiles are better off in their own, properly sized, jvm.
+     */
+    public boolean shouldForkCompiler() {
+        return Runtime.getRuntime().maxMemory() / MB < getDaemonHeapMb() * 3 / 4;
+    }
+
+    private void reportGcPressure(final Logger logger, final boolean warnOnly) {
+        final long gcMillis = getGcMillis() - gcMillisAtStart;
+        final long wallMillis = (System.nanoTime() - nanosAtStart) / 1_000_000;
+        if (wallMillis <= 0) {
+            return;
+        }
+        final double ratio = (double) gcMillis / wallMillis;
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        final String message =
+                String.format(
+                        "The gradle daemon spent %dms of %dms (%.0f%%) in GC, with %dMB of %dMB"
+                                + " heap in use",
+                        gcMillis,
+                        wallMillis,
+                        ratio * 100,
+                        heap.getUsed() / MB,
+                        heap.getMax() / MB);
+        if (ratio >= GC_PRESSURE_WARNING) {
+            logger.warn(
+                    message
+                            + ". Consider org.gradle.jvmargs=-Xmx"
+                            + getDaemonHeapMb()
+                            + "m, see writeRecommendedGradleProperties");
+        } else if (warnOnly) {
+            logger.info(message);
+        } else {
+            logger.lifecycle(message);
+        }
+    }
+
+    private static long getGcMillis() {
+        long total = 0;
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // -1 if the collector doesn't track it
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static long clamp(final long value, final long min, final long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
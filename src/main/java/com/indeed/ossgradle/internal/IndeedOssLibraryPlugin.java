@@ -1,6 +1,5 @@
 package com.indeed.ossgradle.internal;
 
-import com.google.common.base.Preconditions;
 import org.apache.commons.lang3.StringUtils;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
@@ -9,16 +8,18 @@ import org.gradle.api.plugins.JavaPluginExtension;
 import org.gradle.api.publish.PublishingExtension;
 import org.gradle.api.publish.maven.MavenPublication;
 import org.gradle.api.publish.maven.plugins.MavenPublishPlugin;
+import org.gradle.api.publish.maven.tasks.GenerateMavenPom;
 import org.gradle.api.publish.maven.tasks.PublishToMavenLocal;
 import org.gradle.api.publish.maven.tasks.PublishToMavenRepository;
+import org.gradle.api.tasks.TaskProvider;
 import org.gradle.api.tasks.javadoc.Javadoc;
 import org.gradle.external.javadoc.CoreJavadocOptions;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.function.Supplier;
+import java.nio.file.attribute.FileTime;
 
 /** Applied if the current project is a publishable library */
 public class IndeedOssLibraryPlugin implements Plugin<Project> {
@@ -35,36 +36,6 @@ public class IndeedOssLibraryPlugin implements Plugin<Project> {
 
     public void onVersionReady(final String version) {
         project.setVersion(version);
-
-        final PublishingExtension publishingExt =
-                project.getExtensions().getByType(PublishingExtension.class);
-        publishingExt
-                .getPublications()
-                .withType(MavenPublication.class)
-                .configureEach(
-                        pub -> {
-                            if (pub.getName().endsWith("PluginMarkerMaven")) {
-                                pub.getPom()
-                                        .withXml(
-                                                xmlProvider -> {
-                                                    Element root = xmlProvider.asElement();
-                                                    Document document = root.getOwnerDocument();
-                                                    Node dependencies =
-                                                            root.getElementsByTagName(
-                                                                            "dependencies")
-                                                                    .item(0);
-                                                    Node dependency =
-                                                            dependencies.getChildNodes().item(0);
-                                                    Node versionNode =
-                                                            dependency.getChildNodes().item(2);
-                                                    Preconditions.checkArgument(
-                                                            versionNode
-                                                                    .getNodeName()
-                                                                    .equals("version"));
-                                                    versionNode.setTextContent(version);
-                                                });
-                            }
-                        });
     }
 
     private void afterEvaluate() {
@@ -73,7 +44,6 @@ public class IndeedOssLibraryPlugin implements Plugin<Project> {
         final IndeedOssLibraryRootPlugin rootPlugin =
                 project.getRootProject().getPlugins().apply(IndeedOssLibraryRootPlugin.class);
         final boolean local = rootPlugin.getIsLocalPublish();
-        final Supplier<String> httpUrlSupplier = () -> rootPlugin.getHttpUrl();
         final Path ciWorkspace = rootPlugin.getCiWorkspace();
         final boolean isGradlePlugin =
                 project.getPlugins().hasPlugin(IndeedOssGradlePluginPlugin.class);
@@ -93,6 +63,21 @@ public class IndeedOssLibraryPlugin implements Plugin<Project> {
         final String publishGroup = ext.getGroup().get();
         final String publishName = ext.getName().get();
 
+        if (project.getGradle().getParent() != null) {
+            // We're included in a composite build, where gradle substitutes our module for
+            // dependencies matching the project's group and name.
+            project.setGroup(publishGroup);
+            if (!publishName.equals(project.getName())) {
+                project.getLogger()
+                        .warn(
+                                "{} publishes as {}:{}, so it can only be substituted in a composite build if the project is also named {}",
+                                project.getPath(),
+                                publishGroup,
+                                publishName,
+                                publishName);
+            }
+        }
+
         final String publicationName;
         if (isGradlePlugin) {
             publicationName = "pluginMaven";
@@ -126,12 +111,17 @@ public class IndeedOssLibraryPlugin implements Plugin<Project> {
                                                 });
                             }
                             if (!isGradlePlugin) {
-                                configurePublicationMetadata(
-                                        project, publication, httpUrlSupplier, publishName);
+                                rootPlugin
+                                        .getPomMetadata()
+                                        .applyTo(publication.getPom(), publishName);
                                 publication.from(project.getComponents().getByName("java"));
                             }
                         });
 
+        if (isGradlePlugin) {
+            configurePluginMarkerPoms(project, publishGroup, publishName);
+        }
+
         if (isGradlePlugin && !local) {
             project.getTasks()
                     .named("publish")
@@ -146,7 +136,8 @@ public class IndeedOssLibraryPlugin implements Plugin<Project> {
                             (repo) -> {
                                 repo.setName("maven");
                                 if (local) {
-                                    repo.setUrl(System.getenv("HOME") + "/.m2/repository");
+                                    repo.setUrl(
+                                            IndeedOssLibraryRootPlugin.getLocalMavenRepository());
                                 } else {
                                     repo.setUrl(ciWorkspace.resolve("maven-publish"));
                                 }
@@ -173,6 +164,39 @@ public class IndeedOssLibraryPlugin implements Plugin<Project> {
                             }
                         });
 
+        if (local) {
+            // Local versions are content addressed, so if this version is already in the local
+            // repository, it has exactly the same contents and there's no need to copy it again.
+            // Either way the version counts as just published, so pruning keeps it.
+            final boolean skipUnchanged =
+                    IndeedOssLibraryRootPlugin.shouldSkipUnchangedLocalPublish(project);
+            project.getTasks()
+                    .withType(PublishToMavenRepository.class)
+                    .configureEach(
+                            task -> {
+                                task.onlyIf(
+                                        t -> {
+                                            final Path versionDir =
+                                                    getLocalVersionDir(task.getPublication());
+                                            if (skipUnchanged && isPublishedLocally(versionDir)) {
+                                                touch(versionDir);
+                                                return false;
+                                            }
+                                            return true;
+                                        });
+                                task.doLast(t -> touch(getLocalVersionDir(task.getPublication())));
+                            });
+        }
+
+        project.getTasks()
+                .register(
+                        "pruneLocalPublishes",
+                        PruneLocalPublishesTask.class,
+                        task -> {
+                            task.setDescription(
+                                    "Deletes all but the most recent local publishes of this library from ~/.m2/repository");
+                        });
+
         project.getTasks()
                 .withType(Javadoc.class)
                 .configureEach(
@@ -183,50 +207,109 @@ public class IndeedOssLibraryPlugin implements Plugin<Project> {
                         });
     }
 
-    private static void configurePublicationMetadata(
+    private static Path getLocalVersionDir(final MavenPublication publication) {
+        return IndeedOssLibraryRootPlugin.getLocalMavenRepository()
+                .resolve(publication.getGroupId().replace('.', '/'))
+                .resolve(publication.getArtifactId())
+                .resolve(publication.getVersion());
+    }
+
+    private static boolean isPublishedLocally(final Path versionDir) {
+        final String artifactId = versionDir.getParent().getFileName().toString();
+        final String version = versionDir.getFileName().toString();
+        return Files.exists(versionDir.resolve(artifactId + "-" + version + ".pom"));
+    }
+
+    /** {@link PruneLocalPublishesTask} ranks versions by when they were last published */
+    private static void touch(final Path versionDir) {
+        if (!Files.isDirectory(versionDir)) {
+            return;
+        }
+        try {
+            Files.setLastModifiedTime(versionDir, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Plugin marker POMs depend on the plugin's library at the version being published, which
+     * gradle's generator captures before we've calculated it. Instead of patching its output, we
+     * generate the marker POMs ourselves, and point gradle's generator at them.
+     */
+    private static void configurePluginMarkerPoms(
+            final Project project, final String publishGroup, final String publishName) {
+        project.getExtensions()
+                .getByType(PublishingExtension.class)
+                .getPublications()
+                .withType(MavenPublication.class)
+                .configureEach(
+                        publication -> {
+                            if (!publication.getName().endsWith("PluginMarkerMaven")) {
+                                return;
+                            }
+                            final String capitalized =
+                                    StringUtils.capitalize(publication.getName());
+                            final TaskProvider<GeneratePluginMarkerPomTask> generateTask =
+                                    project.getTasks()
+                                            .register(
+                                                    "generateStreamingPomFileFor"
+                                                            + capitalized
+                                                            + "Publication",
+                                                    GeneratePluginMarkerPomTask.class,
+                                                    task ->
+                                                            configureMarkerPomTask(
+                                                                    project,
+                                                                    task,
+                                                                    publication,
+                                                                    publishGroup,
+                                                                    publishName));
+                            project.getTasks()
+                                    .withType(GenerateMavenPom.class)
+                                    .matching(
+                                            task ->
+                                                    task.getName()
+                                                            .equals(
+                                                                    "generatePomFileFor"
+                                                                            + capitalized
+                                                                            + "Publication"))
+                                    .configureEach(
+                                            task -> {
+                                                task.dependsOn(generateTask);
+                                                task.setDestination(
+                                                        generateTask.flatMap(
+                                                                GeneratePluginMarkerPomTask
+                                                                        ::getDestination));
+                                                task.setEnabled(false);
+                                            });
+                        });
+    }
+
+    private static void configureMarkerPomTask(
             final Project project,
+            final GeneratePluginMarkerPomTask task,
             final MavenPublication publication,
-            final Supplier<String> httpUrlSupplier,
+            final String publishGroup,
             final String publishName) {
-        final String httpUrl = httpUrlSupplier.get();
-        final String scmUrl =
-                StringUtils.replaceOnce(
-                                StringUtils.replace(httpUrl, "https://", "scm:git:git@"), "/", ":")
-                        + ".git";
-
-        publication.getPom().getName().set(publishName);
-        publication.getPom().getDescription().set(publishName);
-        publication.getPom().getUrl().set(httpUrl);
-        publication
-                .getPom()
-                .developers(
-                        (devs) ->
-                                devs.developer(
-                                        (dev) -> {
-                                            dev.getId().set("IndeedEng");
-                                            dev.getName().set("Indeed Engineering");
-                                            dev.getUrl().set("https://github.com/indeedeng");
-                                        }));
-        publication
-                .getPom()
-                .licenses(
-                        (lics) ->
-                                lics.license(
-                                        (lic) -> {
-                                            lic.getName()
-                                                    .set(
-                                                            "The Apache Software License, Version 2.0");
-                                            lic.getUrl()
-                                                    .set(
-                                                            "http://www.apache.org/licenses/LICENSE-2.0.txt");
-                                        }));
-        publication
-                .getPom()
-                .scm(
-                        (scm) -> {
-                            scm.getUrl().set(httpUrl);
-                            scm.getConnection().set(scmUrl);
-                            scm.getDeveloperConnection().set(scmUrl);
-                        });
+        task.setDescription(
+                "Generates the Maven POM file for publication '" + publication.getName() + "'.");
+        // Publications read their coordinates from the project lazily, so these can't be read
+        // until the version has been calculated
+        task.getMarkerGroupId().set(project.provider(publication::getGroupId));
+        task.getMarkerArtifactId().set(project.provider(publication::getArtifactId));
+        task.getMarkerVersion().set(project.provider(publication::getVersion));
+        task.getMarkerName().set(publication.getPom().getName());
+        task.getMarkerDescription().set(publication.getPom().getDescription());
+        task.getPluginGroupId().set(publishGroup);
+        task.getPluginArtifactId().set(publishName);
+        task.getPluginVersion().set(project.provider(() -> String.valueOf(project.getVersion())));
+        task.getDestination()
+                .set(
+                        project.getLayout()
+                                .getBuildDirectory()
+                                .file(
+                                        "publications/"
+                                                + publication.getName()
+                                                + "/streaming-pom.xml"));
     }
 }
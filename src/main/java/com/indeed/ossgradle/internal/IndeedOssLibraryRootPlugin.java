@@ -3,6 +3,8 @@ package com.indeed.ossgradle.internal;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 import com.google.common.base.Suppliers;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import org.apache.commons.lang3.StringUtils;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
@@ -10,32 +12,51 @@ import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.api.artifacts.ResolvedDependency;
 import org.gradle.api.artifacts.repositories.ArtifactRepository;
+import org.gradle.api.artifacts.repositories.UrlArtifactRepository;
 import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.Version;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser;
 import org.gradle.api.invocation.Gradle;
+import org.gradle.api.plugins.JavaPluginExtension;
+import org.gradle.api.publish.maven.MavenArtifact;
+import org.gradle.api.publish.maven.MavenPublication;
+import org.gradle.api.publish.maven.internal.publication.MavenPublicationInternal;
+import org.gradle.api.publish.maven.tasks.AbstractPublishToMaven;
+import org.gradle.api.publish.maven.tasks.PublishToMavenRepository;
+import org.gradle.api.tasks.SourceSet;
 
 import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.Instant;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class IndeedOssLibraryRootPlugin implements Plugin<Project> {
-    private static final String PUBLOCAL_VERSION_PREFIX = "0.local.";
-    private static final DateTimeFormatter localVersionFormatter =
-            DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC);
+    static final String PUBLOCAL_VERSION_PREFIX = "0.local.";
+    static final String SKIP_UNCHANGED_LOCAL_PUBLISH_PROPERTY =
+            "indeed.oss.skipUnchangedLocalPublish";
+    private static final String VERSION_CALCULATOR = "versionCalculator";
+    private static final String PLUGIN_PORTAL_ARTIFACTS = "pluginPortalArtifacts";
     private static final Comparator<Version> VERSION_COMPARATOR =
             new DefaultVersionComparator().asVersionComparator();
     private static final VersionParser VERSION_PARSER = new VersionParser();
@@ -44,6 +65,7 @@ public class IndeedOssLibraryRootPlugin implements Plugin<Project> {
     private Supplier<Boolean> isLocalPublishSupplier;
     private Supplier<Path> ciWorkspaceSupplier;
     private Supplier<String> httpUrlSupplier;
+    private Supplier<PomMetadata> pomMetadataSupplier;
 
     public void apply(final Project rootProject) {
         IndeedOssUtil.assertRootProject(rootProject);
@@ -68,6 +90,10 @@ public class IndeedOssLibraryRootPlugin implements Plugin<Project> {
                 Suppliers.memoize(
                         () -> {
                             final boolean local = getIsLocalPublish();
+                            if (rootProject.getGradle().getParent() != null) {
+                                // Builds included in a composite are never published
+                                return null;
+                            }
                             if (rootProject.getGradle().getStartParameter().getTaskRequests()
                                     .stream()
                                     .noneMatch(request -> request.getArgs().contains("publish"))) {
@@ -81,11 +107,68 @@ public class IndeedOssLibraryRootPlugin implements Plugin<Project> {
                             return version;
                         });
         httpUrlSupplier = Suppliers.memoize(() -> GitUtil.getHttpUrl(rootProject));
+        pomMetadataSupplier = Suppliers.memoize(() -> new PomMetadata(getHttpUrl()));
+        recordPublishMetrics(rootProject);
+    }
+
+    /**
+     * Times every publish task and adds up the bytes it published, per module and repository.
+     * These callbacks don't change the tasks, so they don't affect their up-to-date checks.
+     */
+    private static void recordPublishMetrics(final Project rootProject) {
+        final Map<String, Long> startNanos = new ConcurrentHashMap<>();
+        rootProject
+                .getGradle()
+                .getTaskGraph()
+                .beforeTask(
+                        task -> {
+                            if (task instanceof AbstractPublishToMaven) {
+                                startNanos.put(task.getPath(), System.nanoTime());
+                            }
+                        });
+        rootProject
+                .getGradle()
+                .getTaskGraph()
+                .afterTask(
+                        task -> {
+                            final Long start = startNanos.remove(task.getPath());
+                            final boolean failed = task.getState().getFailure() != null;
+                            if (start == null || !(failed || task.getState().getDidWork())) {
+                                return;
+                            }
+                            final MavenPublication publication =
+                                    ((AbstractPublishToMaven) task).getPublication();
+                            final Map<String, String> labels = new HashMap<>();
+                            labels.put(
+                                    "module",
+                                    publication.getGroupId() + ":" + publication.getArtifactId());
+                            labels.put(
+                                    "repository",
+                                    task instanceof PublishToMavenRepository
+                                            ? ((PublishToMavenRepository) task)
+                                                    .getRepository()
+                                                    .getName()
+                                            : "mavenLocal");
+                            final ReleaseMetrics metrics = ReleaseMetrics.get(rootProject);
+                            metrics.observe(
+                                    "publish", labels, 1, (System.nanoTime() - start) / 1e9);
+                            if (failed) {
+                                metrics.increment("publish_failures", labels, 1);
+                                return;
+                            }
+                            long bytes = 0;
+                            for (final MavenArtifact artifact :
+                                    ((MavenPublicationInternal) publication)
+                                            .getPublishableArtifacts()) {
+                                bytes += artifact.getFile().length();
+                            }
+                            metrics.increment("publish_bytes", labels, bytes);
+                        });
     }
 
     private static String calculateNextVersion(final Project project, final boolean local) {
         if (local) {
-            return PUBLOCAL_VERSION_PREFIX + localVersionFormatter.format(Instant.now());
+            return PUBLOCAL_VERSION_PREFIX + hashLocalPublishInputs(project.getGradle());
         }
 
         final String defaultBranch = GitUtil.getDefaultBranch(project);
@@ -114,64 +197,310 @@ public class IndeedOssLibraryRootPlugin implements Plugin<Project> {
         return nextVersion + suffix;
     }
 
+    /**
+     * Local publishes are versioned by a hash of everything that goes into the published
+     * libraries, so that republishing unchanged code reuses the version that is already in the
+     * local maven repository. Since all libraries of a build are published with the same version,
+     * this hashes the inputs of all of them. The version has to be known at configuration time,
+     * before anything is built, so we hash what the jars are built from rather than the jars:
+     *
+     * <ul>
+     *   <li>the build logic: every build script, settings, gradle.properties, buildSrc and this
+     *       plugin itself
+     *   <li>every source set of every library, since features like multi-release and jmh add
+     *       their own
+     *   <li>the resolved versions of each library's dependencies, which dynamic versions and
+     *       platforms make differ from the declared ones
+     * </ul>
+     *
+     * <p>Anything that slips through this can be republished by setting {@value
+     * #SKIP_UNCHANGED_LOCAL_PUBLISH_PROPERTY}=false.
+     */
+    private static String hashLocalPublishInputs(final Gradle gradle) {
+        final Project rootProject = gradle.getRootProject();
+        final Hasher hasher = Hashing.sha256().newHasher();
+
+        final List<File> buildLogic = new ArrayList<>();
+        for (final String name :
+                new String[] {"settings.gradle", "settings.gradle.kts", "gradle.properties"}) {
+            buildLogic.add(new File(rootProject.getRootDir(), name));
+        }
+        for (final Project project : rootProject.getAllprojects()) {
+            buildLogic.add(project.getBuildFile());
+        }
+        buildLogic.addAll(
+                rootProject
+                        .fileTree(
+                                new File(rootProject.getRootDir(), "buildSrc"),
+                                tree -> tree.exclude("build/**", ".gradle/**"))
+                        .getFiles());
+        hashFiles(rootProject, hasher, buildLogic);
+        hashPluginClasspath(hasher);
+
+        final List<Project> projects =
+                rootProject.getAllprojects().stream()
+                        .filter(p -> p.getPlugins().hasPlugin(IndeedOssLibraryPlugin.class))
+                        .sorted(Comparator.comparing(Project::getPath))
+                        .collect(Collectors.toList());
+        for (final Project project : projects) {
+            final IndeedOssLibraryExtension ext =
+                    project.getExtensions().getByType(IndeedOssLibraryExtension.class);
+            hasher.putString(project.getPath(), StandardCharsets.UTF_8);
+            hasher.putString(ext.getGroup().get(), StandardCharsets.UTF_8);
+            hasher.putString(ext.getName().get(), StandardCharsets.UTF_8);
+
+            final List<File> sources = new ArrayList<>();
+            for (final SourceSet sourceSet :
+                    project.getExtensions().getByType(JavaPluginExtension.class).getSourceSets()) {
+                sources.addAll(sourceSet.getAllSource().getFiles());
+            }
+            hashFiles(rootProject, hasher, sources);
+
+            final SourceSet main =
+                    project.getExtensions()
+                            .getByType(JavaPluginExtension.class)
+                            .getSourceSets()
+                            .getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+            for (final String configurationName :
+                    new String[] {
+                        main.getCompileClasspathConfigurationName(),
+                        main.getRuntimeClasspathConfigurationName()
+                    }) {
+                hasher.putString(configurationName, StandardCharsets.UTF_8);
+                project.getConfigurations().getByName(configurationName).getIncoming()
+                        .getResolutionResult().getAllComponents().stream()
+                        .map(component -> component.getId().getDisplayName())
+                        .sorted()
+                        .forEach(id -> hasher.putString(id, StandardCharsets.UTF_8));
+            }
+        }
+        return hasher.hash().toString().substring(0, 12);
+    }
+
+    private static void hashFiles(
+            final Project rootProject, final Hasher hasher, final Collection<File> files) {
+        files.stream()
+                .filter(File::isFile)
+                .sorted()
+                .forEach(
+                        file -> {
+                            hasher.putString(
+                                    rootProject.relativePath(file), StandardCharsets.UTF_8);
+                            try {
+                                hasher.putBytes(Files.readAllBytes(file.toPath()));
+                            } catch (final IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+    }
+
+    /** A new version of this plugin may publish the same sources differently */
+    private static void hashPluginClasspath(final Hasher hasher) {
+        final Path location;
+        try {
+            location =
+                    Paths.get(
+                            IndeedOssLibraryRootPlugin.class
+                                    .getProtectionDomain()
+                                    .getCodeSource()
+                                    .getLocation()
+                                    .toURI());
+        } catch (final URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+        final List<File> files;
+        if (Files.isDirectory(location)) {
+            // e.g. when built from buildSrc
+            try (final Stream<Path> walk = Files.walk(location)) {
+                files = walk.map(Path::toFile).collect(Collectors.toList());
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            files = Collections.singletonList(location.toFile());
+        }
+        files.stream()
+                .filter(File::isFile)
+                .sorted()
+                .forEach(
+                        file -> {
+                            try {
+                                hasher.putBytes(Files.readAllBytes(file.toPath()));
+                            } catch (final IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+    }
+
     private static String calculateNextVersionFromBuild(final Gradle gradle, final boolean isDev) {
-        final Collection<ModuleIdentifier> ids =
-                gradle.getRootProject().getAllprojects().stream()
-                        .map(
-                                project ->
-                                        project.getExtensions()
-                                                .findByType(IndeedOssLibraryExtension.class))
-                        .filter(ext -> ext != null)
-                        .map(
-                                ext ->
-                                        DefaultModuleIdentifier.newId(
-                                                ext.getGroup().get(), ext.getName().get()))
-                        .collect(Collectors.toSet());
-        return calculateNextVersionFromIds(gradle.getRootProject(), ids, isDev);
+        return calculateNextVersionFromIds(
+                gradle.getRootProject(), getPublishedModuleIds(gradle), isDev);
+    }
+
+    /** The modules published by this build, whose versions a publish looks up */
+    static Set<ModuleIdentifier> getPublishedModuleIds(final Gradle gradle) {
+        return gradle.getRootProject().getAllprojects().stream()
+                .map(project -> project.getExtensions().findByType(IndeedOssLibraryExtension.class))
+                .filter(ext -> ext != null)
+                .map(
+                        ext ->
+                                DefaultModuleIdentifier.newId(
+                                        ext.getGroup().get(), ext.getName().get()))
+                .collect(Collectors.toSet());
     }
 
     public static String calculateNextVersionFromIds(
             final Project project, final Collection<ModuleIdentifier> ids, final boolean isDev) {
-        final String testConfName = "versionCalculator";
+        final Set<String> latestVersions = new HashSet<>();
+        for (final String version : findLatestVersions(project, ids).values()) {
+            latestVersions.add(StringUtils.substringBefore(version, "-"));
+        }
+        project.getLogger().lifecycle(latestVersions.toString());
+
+        return calculateNextVersionFromExistingVersions(latestVersions, isDev);
+    }
+
+    /**
+     * Looks up the latest published version of every given module. All modules are resolved
+     * through a single configuration, so gradle fetches their metadata concurrently. Modules that
+     * have never been published are absent from the result.
+     *
+     * <p>Repositories can't be reconfigured once they've been used, so this can only resolve once
+     * per build, and only before anything else has resolved a configuration of the root project.
+     * Later calls are answered from that first resolution, as long as it covered the requested
+     * modules, so callers should look up all of {@link #getPublishedModuleIds(Gradle)}.
+     */
+    public static Map<ModuleIdentifier, String> findLatestVersions(
+            final Project project, final Collection<ModuleIdentifier> ids) {
+        Configuration testConf = project.getConfigurations().findByName(VERSION_CALCULATOR);
+        if (testConf == null) {
+            testConf = createVersionCalculatorConfiguration(project);
+            for (final ModuleIdentifier id : ids) {
+                testConf.getDependencies()
+                        .add(
+                                project.getDependencies()
+                                        .create(
+                                                id.getGroup()
+                                                        + ":"
+                                                        + id.getName()
+                                                        + ":latest.integration"));
+            }
+        } else {
+            final Set<ModuleIdentifier> looked =
+                    testConf.getDependencies().stream()
+                            .map(
+                                    dep ->
+                                            DefaultModuleIdentifier.newId(
+                                                    dep.getGroup(), dep.getName()))
+                            .collect(Collectors.toSet());
+            if (!looked.containsAll(ids)) {
+                throw new IllegalStateException(
+                        "Versions were already looked up for "
+                                + looked
+                                + " in this build, and cannot be looked up again for "
+                                + ids);
+            }
+        }
+
+        project.getLogger().lifecycle("Fetching latest version on maven repo ...");
+        final Set<ResolvedDependency> resolved = resolveWithMetrics(project, testConf);
+        final Map<ModuleIdentifier, String> latestVersions = new HashMap<>();
+        for (final ResolvedDependency dep : resolved) {
+            latestVersions.put(
+                    DefaultModuleIdentifier.newId(dep.getModuleGroup(), dep.getModuleName()),
+                    dep.getModuleVersion());
+        }
+        latestVersions.keySet().retainAll(ids);
+        return latestVersions;
+    }
+
+    /** Records how long the metadata fetch took, and how much it read, per repository */
+    private static Set<ResolvedDependency> resolveWithMetrics(
+            final Project project, final Configuration configuration) {
+        final ReleaseMetrics metrics = ReleaseMetrics.get(project);
+        final Map<URI, String> repositoryNames = new HashMap<>();
+        for (final ArtifactRepository repo : project.getRepositories()) {
+            if (repo instanceof UrlArtifactRepository) {
+                repositoryNames.put(((UrlArtifactRepository) repo).getUrl(), repo.getName());
+            }
+        }
+        // This counts every read while resolving, which includes any other resolution running in
+        // parallel. Lookups normally happen at configuration time, when there isn't any.
+        final RepositoryDownloadListener listener =
+                new RepositoryDownloadListener(repositoryNames, taskPath -> true);
+        IndeedOssUtil.addBuildOperationListener(project, listener);
+        try {
+            return metrics.time(
+                    "version_lookup",
+                    Collections.emptyMap(),
+                    () ->
+                            configuration
+                                    .getResolvedConfiguration()
+                                    .getLenientConfiguration()
+                                    .getAllModuleDependencies());
+        } finally {
+            IndeedOssUtil.removeBuildOperationListener(project, listener);
+            listener.getDownloads()
+                    .forEach(
+                            (repository, downloads) -> {
+                                final Map<String, String> labels =
+                                        Collections.singletonMap("repository", repository);
+                                metrics.observe(
+                                        "metadata_fetch",
+                                        labels,
+                                        downloads.getResources(),
+                                        downloads.getMillis() / 1000.0);
+                                metrics.increment(
+                                        "metadata_fetch_bytes", labels, downloads.getBytes());
+                                metrics.increment(
+                                        "metadata_fetch_failures", labels, downloads.getFailures());
+                            });
+        }
+    }
+
+    /**
+     * Resolves the given dependencies, and their dependencies, from the gradle plugin portal. The
+     * portal is only set up for the version lookup, so this can only be done after {@link
+     * #findLatestVersions}.
+     */
+    static void resolveFromPluginPortal(final Project project, final List<String> notations) {
+        if (project.getConfigurations().findByName(VERSION_CALCULATOR) == null) {
+            throw new IllegalStateException(
+                    "The plugin portal can only be used after looking up versions");
+        }
+        final Configuration configuration =
+                project.getConfigurations().maybeCreate(PLUGIN_PORTAL_ARTIFACTS);
+        for (final String notation : notations) {
+            configuration.getDependencies().add(project.getDependencies().create(notation));
+        }
+        configuration
+                .getIncoming()
+                .artifactView(view -> view.setLenient(true))
+                .getFiles()
+                .getFiles();
+    }
+
+    private static Configuration createVersionCalculatorConfiguration(final Project project) {
+        final String testConfName = VERSION_CALCULATOR;
         final Configuration testConf = project.getConfigurations().create(testConfName);
         for (final ArtifactRepository repo : project.getRepositories()) {
-            repo.content(c -> c.notForConfigurations(testConfName));
+            repo.content(c -> c.notForConfigurations(testConfName, PLUGIN_PORTAL_ARTIFACTS));
         }
         final ArtifactRepository mavenCentral = project.getRepositories().mavenCentral();
         mavenCentral.content(c -> c.onlyForConfigurations(testConfName));
         project.getRepositories().add(mavenCentral);
         final ArtifactRepository gradlePluginPortal =
                 project.getRepositories().gradlePluginPortal();
-        gradlePluginPortal.content(c -> c.onlyForConfigurations(testConfName));
+        gradlePluginPortal.content(
+                c -> c.onlyForConfigurations(testConfName, PLUGIN_PORTAL_ARTIFACTS));
         project.getRepositories().add(gradlePluginPortal);
 
         testConf.getResolutionStrategy().cacheDynamicVersionsFor(1, TimeUnit.MINUTES);
         testConf.setTransitive(false);
-        for (final ModuleIdentifier id : ids) {
-            testConf.getDependencies()
-                    .add(
-                            project.getDependencies()
-                                    .create(
-                                            id.getGroup()
-                                                    + ":"
-                                                    + id.getName()
-                                                    + ":latest.integration"));
-        }
-
-        project.getLogger().lifecycle("Fetching latest version on maven repo ...");
-        final Set<String> latestVersions = new HashSet<>();
-        for (final ResolvedDependency dep :
-                testConf.getResolvedConfiguration()
-                        .getLenientConfiguration()
-                        .getAllModuleDependencies()) {
-            latestVersions.add(StringUtils.substringBefore(dep.getModuleVersion(), "-"));
-        }
-        project.getLogger().lifecycle(latestVersions.toString());
-
-        return calculateNextVersionFromExistingVersions(latestVersions, isDev);
+        return testConf;
     }
 
-    private static String calculateNextVersionFromExistingVersions(
+    static String calculateNextVersionFromExistingVersions(
             final Collection<String> latestVersions, final boolean isDev) {
         if (latestVersions.isEmpty()) {
             return "1.0.0";
@@ -212,6 +541,50 @@ public class IndeedOssLibraryRootPlugin implements Plugin<Project> {
         return Paths.get(workspaceDir);
     }
 
+    /**
+     * The branch being built, as reported by the CI system. This covers the same CI systems as
+     * {@link #getCiWorkspace(Project)}: jenkins, gitlab and github actions.
+     */
+    @Nullable
+    static String getCiBranch(final Map<String, String> env) {
+        // jenkins
+        String branch = env.get("BRANCH_NAME");
+        if (StringUtils.isEmpty(branch) && env.get("GIT_BRANCH") != null) {
+            branch = StringUtils.removeStart(env.get("GIT_BRANCH"), "origin/");
+        }
+        // gitlab
+        if (StringUtils.isEmpty(branch)) {
+            branch = env.get("CI_COMMIT_REF_NAME");
+        }
+        // github actions, where GITHUB_HEAD_REF is only set for pull requests
+        if (StringUtils.isEmpty(branch)) {
+            branch = env.get("GITHUB_HEAD_REF");
+        }
+        if (StringUtils.isEmpty(branch) && env.get("GITHUB_REF") != null) {
+            branch = StringUtils.removeStart(env.get("GITHUB_REF"), "refs/heads/");
+        }
+        return StringUtils.isEmpty(branch) ? null : branch;
+    }
+
+    /** The default branch of the repository, if the CI system tells us. Only gitlab does. */
+    @Nullable
+    static String getCiDefaultBranch(final Map<String, String> env) {
+        final String branch = env.get("CI_DEFAULT_BRANCH");
+        return StringUtils.isEmpty(branch) ? null : branch;
+    }
+
+    /** Whether local publishes of a version that's already in the local repository are skipped */
+    static boolean shouldSkipUnchangedLocalPublish(final Project project) {
+        return !"false"
+                .equals(
+                        String.valueOf(
+                                project.findProperty(SKIP_UNCHANGED_LOCAL_PUBLISH_PROPERTY)));
+    }
+
+    public static Path getLocalMavenRepository() {
+        return Paths.get(System.getenv("HOME"), ".m2", "repository");
+    }
+
     public String getVersion() {
         return versionSupplier.get();
     }
@@ -228,4 +601,8 @@ public class IndeedOssLibraryRootPlugin implements Plugin<Project> {
     public String getHttpUrl() {
         return httpUrlSupplier.get();
     }
+
+    PomMetadata getPomMetadata() {
+        return pomMetadataSupplier.get();
+    }
 }
@@ -0,0 +1,17 @@
+package com.indeed.ossgradle.internal;
+
+public class IndeedOssMultiReleaseExtension {
+    private final IndeedOssMultiReleasePlugin plugin;
+
+    public IndeedOssMultiReleaseExtension(final IndeedOssMultiReleasePlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Adds classes compiled for the given java release to the jar, which are used instead of the
+     * base classes on that release or newer. Their sources go in src/main/java{release}.
+     */
+    public void targetRelease(final int release) {
+        plugin.addRelease(release);
+    }
+}
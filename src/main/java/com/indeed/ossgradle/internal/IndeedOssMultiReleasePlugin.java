@@ -0,0 +1,148 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.Action;
+import org.gradle.api.JavaVersion;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.plugins.JavaPluginExtension;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.SourceSetContainer;
+import org.gradle.api.tasks.bundling.Jar;
+import org.gradle.api.tasks.compile.JavaCompile;
+import org.gradle.api.tasks.testing.Test;
+import org.gradle.api.tasks.testing.junitplatform.JUnitPlatformOptions;
+import org.gradle.jvm.toolchain.JavaLanguageVersion;
+import org.gradle.jvm.toolchain.JavaToolchainService;
+import org.gradle.jvm.toolchain.JavaToolchainSpec;
+import org.gradle.language.base.plugins.LifecycleBasePlugin;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Builds a multi-release jar. Each release added through {@link IndeedOssMultiReleaseExtension}
+ * gets its own source set compiled with the matching --release, packaged under
+ * META-INF/versions/{release}, and tested on the matching toolchain.
+ */
+public class IndeedOssMultiReleasePlugin implements Plugin<Project> {
+    private final Set<Integer> releases = new HashSet<>();
+    private Project project;
+
+    @Override
+    public void apply(final Project project) {
+        this.project = project;
+        project.getPlugins().apply(IndeedOssJavaProjectPlugin.class);
+        project.getPlugins().apply(JavaPlugin.class);
+        project.getExtensions()
+                .create("indeedMultiRelease", IndeedOssMultiReleaseExtension.class, this);
+    }
+
+    public void addRelease(final int release) {
+        if (release <= ConfigureJavaPlugin.BASE_RELEASE) {
+            throw new IllegalArgumentException(
+                    "Multi-release target must be newer than java "
+                            + ConfigureJavaPlugin.BASE_RELEASE);
+        }
+        if (!releases.add(release)) {
+            return;
+        }
+
+        final JavaToolchainService toolchains =
+                project.getExtensions().getByType(JavaToolchainService.class);
+        final SourceSetContainer sourceSets =
+                project.getExtensions().getByType(JavaPluginExtension.class).getSourceSets();
+        final SourceSet main = sourceSets.getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+        final SourceSet test = sourceSets.getByName(SourceSet.TEST_SOURCE_SET_NAME);
+        final String versionsDir = "META-INF/versions/" + release;
+        final Action<JavaToolchainSpec> toolchainSpec =
+                spec -> spec.getLanguageVersion().set(JavaLanguageVersion.of(release));
+
+        final SourceSet versioned = sourceSets.create("java" + release);
+        versioned.getJava().setSrcDirs(Collections.singletonList("src/main/java" + release));
+        versioned
+                .getResources()
+                .setSrcDirs(Collections.singletonList("src/main/resources" + release));
+        project.getConfigurations()
+                .getByName(versioned.getImplementationConfigurationName())
+                .extendsFrom(
+                        project.getConfigurations()
+                                .getByName(main.getImplementationConfigurationName()));
+        project.getConfigurations()
+                .getByName(versioned.getCompileOnlyConfigurationName())
+                .extendsFrom(
+                        project.getConfigurations()
+                                .getByName(main.getCompileOnlyConfigurationName()));
+        project.getDependencies()
+                .add(versioned.getImplementationConfigurationName(), main.getOutput());
+
+        // ConfigureJavaPlugin sets the base release on every JavaCompile, and has already been
+        // applied, so this runs after it
+        project.getTasks()
+                .named(
+                        versioned.getCompileJavaTaskName(),
+                        JavaCompile.class,
+                        task -> {
+                            task.getOptions().getRelease().set(release);
+                            if (JavaVersion.current().compareTo(JavaVersion.toVersion(release))
+                                    < 0) {
+                                task.getJavaCompiler().set(toolchains.compilerFor(toolchainSpec));
+                            }
+                        });
+
+        project.getTasks()
+                .named(
+                        JavaPlugin.JAR_TASK_NAME,
+                        Jar.class,
+                        jar -> {
+                            jar.getManifest().getAttributes().put("Multi-Release", "true");
+                            jar.into(versionsDir, spec -> spec.from(versioned.getOutput()));
+                        });
+
+        // The sources jar is only created by IndeedOssLibraryPlugin after evaluation, if at all.
+        // Javadoc is left alone, since versioned classes must not change the public api.
+        project.getTasks()
+                .withType(Jar.class)
+                .configureEach(
+                        jar -> {
+                            if (jar.getName().equals(main.getSourcesJarTaskName())) {
+                                jar.into(
+                                        versionsDir,
+                                        spec -> spec.from(versioned.getAllSource()));
+                            }
+                        });
+
+        // Versioned classes are only picked up from a jar, so test against the jar, on a jvm
+        // matching the release.
+        final String testTaskName = "testJava" + release;
+        project.getTasks()
+                .register(
+                        testTaskName,
+                        Test.class,
+                        task -> {
+                            task.setDescription(
+                                    "Runs the tests against the jar on java " + release);
+                            task.setGroup(LifecycleBasePlugin.VERIFICATION_GROUP);
+                            task.setTestClassesDirs(test.getOutput().getClassesDirs());
+                            task.setClasspath(
+                                    project.files(
+                                                    project.getTasks()
+                                                            .named(JavaPlugin.JAR_TASK_NAME))
+                                            .plus(
+                                                    test.getRuntimeClasspath()
+                                                            .minus(main.getOutput())));
+                            task.getJavaLauncher().set(toolchains.launcherFor(toolchainSpec));
+                            final Test baseTest =
+                                    project.getTasks()
+                                            .named(JavaPlugin.TEST_TASK_NAME, Test.class)
+                                            .get();
+                            if (baseTest.getOptions() instanceof JUnitPlatformOptions) {
+                                task.useJUnitPlatform();
+                            }
+                        });
+        project.getTasks()
+                .named(LifecycleBasePlugin.CHECK_TASK_NAME)
+                .configure(task -> task.dependsOn(testTaskName));
+    }
+}
@@ -1,6 +1,9 @@
 package com.indeed.ossgradle.internal;
 
 import org.gradle.api.Project;
+import org.gradle.api.internal.GradleInternal;
+import org.gradle.internal.operations.BuildOperationListener;
+import org.gradle.internal.operations.BuildOperationListenerManager;
 
 public class IndeedOssUtil {
     /**
@@ -26,4 +29,28 @@ public class IndeedOssUtil {
             throw new IllegalStateException("This plugin can only be applied to the root project");
         }
     }
+
+    /**
+     * Gradle doesn't offer a public api for some of what happens inside tasks, like annotation
+     * processing times or downloads, but reports it all as build operations. The listener is
+     * removed again at the end of the build, since the listener manager outlives it in the daemon.
+     */
+    public static void addBuildOperationListener(
+            final Project project, final BuildOperationListener listener) {
+        final BuildOperationListenerManager manager =
+                ((GradleInternal) project.getGradle())
+                        .getServices()
+                        .get(BuildOperationListenerManager.class);
+        manager.addListener(listener);
+        project.getGradle().buildFinished(result -> manager.removeListener(listener));
+    }
+
+    /** For listeners only needed for part of the build */
+    public static void removeBuildOperationListener(
+            final Project project, final BuildOperationListener listener) {
+        ((GradleInternal) project.getGradle())
+                .getServices()
+                .get(BuildOperationListenerManager.class)
+                .removeListener(listener);
+    }
 }
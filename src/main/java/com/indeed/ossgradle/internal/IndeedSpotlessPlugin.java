@@ -2,12 +2,21 @@ package com.indeed.ossgradle.internal;
 
 import com.diffplug.gradle.spotless.SpotlessExtension;
 import com.diffplug.gradle.spotless.SpotlessPlugin;
+import com.diffplug.spotless.kotlin.KtLintStep;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.plugins.JavaPlugin;
 import org.gradle.api.tasks.compile.AbstractCompile;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class IndeedSpotlessPlugin implements Plugin<Project> {
+    static final String GOOGLE_JAVA_FORMAT_VERSION = "1.7";
+    private static final String GOOGLE_JAVA_FORMAT =
+            "com.google.googlejavaformat:google-java-format:" + GOOGLE_JAVA_FORMAT_VERSION;
+    private static final String KTLINT = "com.pinterest:ktlint:" + KtLintStep.defaultVersion();
+
     @Override
     public void apply(final Project project) {
         project.getPlugins().apply(SpotlessPlugin.class);
@@ -20,6 +29,25 @@ public class IndeedSpotlessPlugin implements Plugin<Project> {
         project.getPlugins().withId("kotlin-android", p -> applySpotlessKotlin(project, ext));
     }
 
+    /**
+     * The formatters spotless will download for the given project, so they can be fetched ahead
+     * of time. Spotless resolves them itself, from the project's repositories.
+     */
+    static List<String> getFormatterDependencies(final Project project) {
+        final List<String> dependencies = new ArrayList<>();
+        if (!project.getPlugins().hasPlugin(IndeedSpotlessPlugin.class)) {
+            return dependencies;
+        }
+        if (project.getPlugins().hasPlugin(JavaPlugin.class)) {
+            dependencies.add(GOOGLE_JAVA_FORMAT);
+        }
+        if (project.getPlugins().hasPlugin("kotlin")
+                || project.getPlugins().hasPlugin("kotlin-android")) {
+            dependencies.add(KTLINT);
+        }
+        return dependencies;
+    }
+
     public void applySpotlessJava(final Project project, final SpotlessExtension ext) {
         ext.java(
                 java -> {
@@ -30,7 +58,7 @@ public class IndeedSpotlessPlugin implements Plugin<Project> {
                     java.removeUnusedImports();
                     java.trimTrailingWhitespace();
                     java.endWithNewline();
-                    java.googleJavaFormat("1.7").aosp();
+                    java.googleJavaFormat(GOOGLE_JAVA_FORMAT_VERSION).aosp();
                     java.importOrder("", "javax", "java", "\\#");
                     java.replaceRegex(
                             "Remove extra line between javax and java",
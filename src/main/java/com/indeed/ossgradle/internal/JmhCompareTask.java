@@ -0,0 +1,103 @@
+package com.indeed.ossgradle.internal;
+
+import groovy.json.JsonSlurper;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Compares two jmh json result files, and fails if any benchmark regressed too much. */
+public abstract class JmhCompareTask extends DefaultTask {
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getResults();
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getBaselineResults();
+
+    @Input
+    public abstract Property<Double> getRegressionThreshold();
+
+    @TaskAction
+    public void run() {
+        final Map<String, Map<String, Object>> current = readScores(getResults());
+        final Map<String, Map<String, Object>> baseline = readScores(getBaselineResults());
+        final double threshold = getRegressionThreshold().get();
+
+        final List<String> regressions = new ArrayList<>();
+        for (final Map.Entry<String, Map<String, Object>> entry : current.entrySet()) {
+            final Map<String, Object> base = baseline.get(entry.getKey());
+            if (base == null) {
+                getLogger().lifecycle(entry.getKey() + ": no baseline");
+                continue;
+            }
+            final double score = getScore(entry.getValue());
+            final double baseScore = getScore(base);
+            // Throughput is better when higher, all other modes measure time
+            final double regression =
+                    "thrpt".equals(entry.getValue().get("mode"))
+                            ? (baseScore - score) / baseScore
+                            : (score - baseScore) / baseScore;
+            final String summary =
+                    String.format(
+                            "%s: %.3f %s, was %.3f (%+.1f%%)",
+                            entry.getKey(),
+                            score,
+                            getScoreUnit(entry.getValue()),
+                            baseScore,
+                            (score - baseScore) / baseScore * 100);
+            getLogger().lifecycle(summary);
+            if (regression > threshold) {
+                regressions.add(summary);
+            }
+        }
+
+        if (!regressions.isEmpty()) {
+            throw new GradleException(
+                    "Benchmarks regressed by more than "
+                            + Math.round(threshold * 100)
+                            + "%:\n"
+                            + String.join("\n", regressions));
+        }
+    }
+
+    /** Benchmark results keyed by benchmark name and parameters. */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Map<String, Object>> readScores(final RegularFileProperty file) {
+        final File resultFile = file.get().getAsFile();
+        final List<Map<String, Object>> results =
+                (List<Map<String, Object>>) new JsonSlurper().parse(resultFile);
+        final Map<String, Map<String, Object>> scores = new LinkedHashMap<>();
+        for (final Map<String, Object> result : results) {
+            String key = (String) result.get("benchmark");
+            if (result.get("params") != null) {
+                key += " " + result.get("params");
+            }
+            scores.put(key, result);
+        }
+        return scores;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static double getScore(final Map<String, Object> result) {
+        return ((Number) ((Map<String, Object>) result.get("primaryMetric")).get("score"))
+                .doubleValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String getScoreUnit(final Map<String, Object> result) {
+        return (String) ((Map<String, Object>) result.get("primaryMetric")).get("scoreUnit");
+    }
+}
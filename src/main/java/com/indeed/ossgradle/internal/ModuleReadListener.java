@@ -0,0 +1,65 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.OperationFinishEvent;
+import org.gradle.internal.resource.ExternalResourceReadBuildOperationType.Details;
+
+import javax.annotation.Nullable;
+import java.net.URI;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adds up the time spent reading each module's resources from remote repositories, e.g. its
+ * maven-metadata.xml. Resources are attributed to modules by their maven layout path, {@code
+ * group/as/directories/name/}.
+ */
+class ModuleReadListener extends TaskAwareBuildOperationListener {
+    private final Map<String, ModuleIdentifier> modulesByPath = new ConcurrentHashMap<>();
+    private final Map<ModuleIdentifier, LongAdder> millis = new ConcurrentHashMap<>();
+
+    /**
+     * Counts every read, whichever task it's made for, so it should only be added for the duration
+     * of the lookup.
+     */
+    ModuleReadListener(final Collection<ModuleIdentifier> modules) {
+        for (final ModuleIdentifier module : modules) {
+            modulesByPath.put(
+                    "/" + module.getGroup().replace('.', '/') + "/" + module.getName() + "/",
+                    module);
+        }
+    }
+
+    @Override
+    protected void finished(
+            @Nullable final String taskPath,
+            final BuildOperationDescriptor descriptor,
+            final OperationFinishEvent event) {
+        if (!(descriptor.getDetails() instanceof Details)) {
+            return;
+        }
+        final String path = URI.create(((Details) descriptor.getDetails()).getLocation()).getPath();
+        if (path == null) {
+            return;
+        }
+        // The longest match, since one module's path can contain another's, e.g. com/foo/bar/
+        // for com.foo:bar and com/foo/bar/baz/ for com.foo.bar:baz
+        modulesByPath.entrySet().stream()
+                .filter(entry -> path.contains(entry.getKey()))
+                .max(Comparator.comparingInt(entry -> entry.getKey().length()))
+                .ifPresent(
+                        entry ->
+                                millis.computeIfAbsent(entry.getValue(), id -> new LongAdder())
+                                        .add(event.getEndTime() - event.getStartTime()));
+    }
+
+    /** Summed over all of the module's reads, which may have run concurrently */
+    public long getMillis(final ModuleIdentifier module) {
+        final LongAdder moduleMillis = millis.get(module);
+        return moduleMillis == null ? 0 : moduleMillis.sum();
+    }
+}
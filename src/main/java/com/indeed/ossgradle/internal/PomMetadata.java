@@ -0,0 +1,54 @@
+package com.indeed.ossgradle.internal;
+
+import org.apache.commons.lang3.StringUtils;
+import org.gradle.api.publish.maven.MavenPom;
+
+/**
+ * The developer, license and scm metadata of a library POM. It's the same for every library in a
+ * repository, so it's computed once per build and shared by all of their publications.
+ */
+class PomMetadata {
+    private static final String DEVELOPER_ID = "IndeedEng";
+    private static final String DEVELOPER_NAME = "Indeed Engineering";
+    private static final String DEVELOPER_URL = "https://github.com/indeedeng";
+    private static final String LICENSE_NAME = "The Apache Software License, Version 2.0";
+    private static final String LICENSE_URL = "http://www.apache.org/licenses/LICENSE-2.0.txt";
+
+    private final String httpUrl;
+    private final String scmUrl;
+
+    PomMetadata(final String httpUrl) {
+        this.httpUrl = httpUrl;
+        this.scmUrl =
+                StringUtils.replaceOnce(
+                                StringUtils.replace(httpUrl, "https://", "scm:git:git@"), "/", ":")
+                        + ".git";
+    }
+
+    public void applyTo(final MavenPom pom, final String publishName) {
+        pom.getName().set(publishName);
+        pom.getDescription().set(publishName);
+        pom.getUrl().set(httpUrl);
+        pom.developers(
+                devs ->
+                        devs.developer(
+                                dev -> {
+                                    dev.getId().set(DEVELOPER_ID);
+                                    dev.getName().set(DEVELOPER_NAME);
+                                    dev.getUrl().set(DEVELOPER_URL);
+                                }));
+        pom.licenses(
+                lics ->
+                        lics.license(
+                                lic -> {
+                                    lic.getName().set(LICENSE_NAME);
+                                    lic.getUrl().set(LICENSE_URL);
+                                }));
+        pom.scm(
+                scm -> {
+                    scm.getUrl().set(httpUrl);
+                    scm.getConnection().set(scmUrl);
+                    scm.getDeveloperConnection().set(scmUrl);
+                });
+    }
+}
@@ -0,0 +1,152 @@
+package com.indeed.ossgradle.internal;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.publish.PublishingExtension;
+import org.gradle.api.publish.maven.MavenPublication;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.options.Option;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Deletes stale local publishes ({@code 0.local.*} versions) of every publication in this project
+ * from the local maven repository, keeping only the most recently published ones.
+ *
+ * <p>Versions are ranked by the modification time of their directory, which local publishes
+ * update even when they reuse a version that's already there, see {@link IndeedOssLibraryPlugin}.
+ */
+public class PruneLocalPublishesTask extends DefaultTask {
+    private static final Pattern VERSION_PATTERN = Pattern.compile("<version>(.*)</version>");
+    private static final Pattern LATEST_PATTERN =
+            Pattern.compile("<(latest|release)>(.*)</(latest|release)>");
+
+    private int keep = 3;
+
+    @Option(option = "keep", description = "Number of local publishes to keep per module")
+    public void setKeepOption(final String keep) {
+        this.keep = Integer.parseInt(keep);
+    }
+
+    @TaskAction
+    public void run() throws IOException {
+        final PublishingExtension publishingExt =
+                getProject().getExtensions().findByType(PublishingExtension.class);
+        if (publishingExt == null) {
+            return;
+        }
+        for (final MavenPublication publication :
+                publishingExt.getPublications().withType(MavenPublication.class)) {
+            prune(
+                    IndeedOssLibraryRootPlugin.getLocalMavenRepository()
+                            .resolve(publication.getGroupId().replace('.', '/'))
+                            .resolve(publication.getArtifactId()));
+        }
+    }
+
+    private void prune(final Path moduleDir) throws IOException {
+        if (!Files.isDirectory(moduleDir)) {
+            return;
+        }
+        final List<Path> localVersions;
+        try (final Stream<Path> children = Files.list(moduleDir)) {
+            localVersions =
+                    children.filter(Files::isDirectory)
+                            .filter(
+                                    dir ->
+                                            dir.getFileName()
+                                                    .toString()
+                                                    .startsWith(
+                                                            IndeedOssLibraryRootPlugin
+                                                                    .PUBLOCAL_VERSION_PREFIX))
+                            .sorted(
+                                    Comparator.comparing(
+                                                    (Path dir) -> dir.toFile().lastModified())
+                                            .reversed())
+                            .collect(Collectors.toList());
+        }
+        if (localVersions.size() <= keep) {
+            return;
+        }
+
+        final List<Path> stale = localVersions.subList(keep, localVersions.size());
+        for (final Path dir : stale) {
+            getLogger().lifecycle("Deleting " + dir);
+            MoreFiles.deleteRecursively(dir, RecursiveDeleteOption.ALLOW_INSECURE);
+        }
+        final List<String> staleVersions =
+                stale.stream()
+                        .map(dir -> dir.getFileName().toString())
+                        .collect(Collectors.toList());
+        removeFromMetadata(moduleDir, staleVersions);
+    }
+
+    /**
+     * Gradle lists every published version in maven-metadata.xml, which is used to resolve dynamic
+     * versions. Drop the deleted versions from it so they don't get picked.
+     */
+    @SuppressWarnings("deprecation")
+    private static void removeFromMetadata(final Path moduleDir, final List<String> versions)
+            throws IOException {
+        final Path metadata = moduleDir.resolve("maven-metadata.xml");
+        if (!Files.exists(metadata)) {
+            return;
+        }
+        final String original = new String(Files.readAllBytes(metadata), StandardCharsets.UTF_8);
+        final StringBuilder pruned = new StringBuilder();
+        String lastRemainingVersion = null;
+        for (final String line : original.split("\n", -1)) {
+            final Matcher matcher = VERSION_PATTERN.matcher(line.trim());
+            if (matcher.matches()) {
+                if (versions.contains(matcher.group(1))) {
+                    continue;
+                }
+                lastRemainingVersion = matcher.group(1);
+            }
+            pruned.append(line).append('\n');
+        }
+        final Matcher latest = LATEST_PATTERN.matcher(pruned.substring(0, pruned.length() - 1));
+        final StringBuffer result = new StringBuffer();
+        while (latest.find()) {
+            final String version =
+                    lastRemainingVersion != null && versions.contains(latest.group(2))
+                            ? lastRemainingVersion
+                            : latest.group(2);
+            latest.appendReplacement(
+                    result,
+                    Matcher.quoteReplacement(
+                            "<" + latest.group(1) + ">" + version + "</" + latest.group(3) + ">"));
+        }
+        latest.appendTail(result);
+        final byte[] bytes = result.toString().getBytes(StandardCharsets.UTF_8);
+        Files.write(metadata, bytes);
+
+        // Keep the checksums gradle wrote next to the metadata consistent with it
+        writeChecksum(moduleDir.resolve("maven-metadata.xml.md5"), Hashing.md5(), bytes);
+        writeChecksum(moduleDir.resolve("maven-metadata.xml.sha1"), Hashing.sha1(), bytes);
+        writeChecksum(moduleDir.resolve("maven-metadata.xml.sha256"), Hashing.sha256(), bytes);
+        writeChecksum(moduleDir.resolve("maven-metadata.xml.sha512"), Hashing.sha512(), bytes);
+    }
+
+    private static void writeChecksum(
+            final Path file, final HashFunction hashFunction, final byte[] bytes)
+            throws IOException {
+        if (Files.exists(file)) {
+            Files.write(
+                    file,
+                    hashFunction.hashBytes(bytes).toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
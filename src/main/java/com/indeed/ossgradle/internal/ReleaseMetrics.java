@@ -0,0 +1,195 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.Project;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timers for the stages of version calculation and publishing, written at the end
+ * of the build in the OpenMetrics text format to build/reports/indeed-oss-metrics.txt in the root
+ * project.
+ *
+ * <p>If the gradle property indeed.oss.metrics.endpoint is set, the metrics are also POSTed
+ * there, e.g. to a prometheus pushgateway.
+ */
+class ReleaseMetrics {
+    public static final String ENDPOINT_PROPERTY = "indeed.oss.metrics.endpoint";
+    private static final String PREFIX = "indeed_oss_";
+    private static final String CONTENT_TYPE =
+            "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    private static final int PUSH_TIMEOUT_MILLIS = 10_000;
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+
+    private ReleaseMetrics() {}
+
+    /** The metrics of the build the given project belongs to */
+    public static ReleaseMetrics get(final Project project) {
+        final Project rootProject = project.getRootProject();
+        synchronized (rootProject) {
+            ReleaseMetrics metrics = rootProject.getExtensions().findByType(ReleaseMetrics.class);
+            if (metrics == null) {
+                metrics = new ReleaseMetrics();
+                rootProject
+                        .getExtensions()
+                        .add(ReleaseMetrics.class, "indeedOssReleaseMetrics", metrics);
+                final ReleaseMetrics finalMetrics = metrics;
+                rootProject.getGradle().buildFinished(result -> finalMetrics.write(rootProject));
+            }
+            return metrics;
+        }
+    }
+
+    /** Times the given action as {name}_seconds, and counts failures as {name}_failures_total */
+    public <T, E extends Exception> T time(
+            final String name, final Map<String, String> labels, final TimedAction<T, E> action)
+            throws E {
+        final long start = System.nanoTime();
+        try {
+            return action.run();
+        } catch (final Exception e) {
+            increment(name + "_failures", labels, 1);
+            throw e;
+        } finally {
+            observe(name, labels, 1, (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    /** Adds to the summary {name}_seconds */
+    public void observe(
+            final String name,
+            final Map<String, String> labels,
+            final long count,
+            final double seconds) {
+        final Family family =
+                families.computeIfAbsent(name + "_seconds", n -> new Family("summary", "seconds"));
+        final String key = formatLabels(labels);
+        family.counts.computeIfAbsent(key, k -> new LongAdder()).add(count);
+        family.sums.computeIfAbsent(key, k -> new DoubleAdder()).add(seconds);
+    }
+
+    /** Adds to the counter {name}_total */
+    public void increment(final String name, final Map<String, String> labels, final long amount) {
+        final Family family = families.computeIfAbsent(name, n -> new Family("counter", null));
+        family.counts.computeIfAbsent(formatLabels(labels), k -> new LongAdder()).add(amount);
+    }
+
+    String toOpenMetrics() {
+        final StringBuilder out = new StringBuilder();
+        for (final Map.Entry<String, Family> entry : new TreeMap<>(families).entrySet()) {
+            final String name = PREFIX + entry.getKey();
+            final Family family = entry.getValue();
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            if (family.unit != null) {
+                out.append("# UNIT ").append(name).append(' ').append(family.unit).append('\n');
+            }
+            for (final String labels : new TreeMap<>(family.counts).keySet()) {
+                if (family.sums.isEmpty()) {
+                    appendSample(out, name + "_total", labels, family.counts.get(labels).sum());
+                } else {
+                    appendSample(out, name + "_count", labels, family.counts.get(labels).sum());
+                    appendSample(out, name + "_sum", labels, family.sums.get(labels).sum());
+                }
+            }
+        }
+        return out.append("# EOF\n").toString();
+    }
+
+    private void write(final Project rootProject) {
+        if (families.isEmpty()) {
+            return;
+        }
+        final byte[] metrics = toOpenMetrics().getBytes(StandardCharsets.UTF_8);
+        final File file = new File(rootProject.getBuildDir(), "reports/indeed-oss-metrics.txt");
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(file.toPath(), metrics);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        families.clear();
+
+        final Object endpoint = rootProject.findProperty(ENDPOINT_PROPERTY);
+        if (endpoint == null) {
+            return;
+        }
+        // Metrics are never worth failing a publish over
+        try {
+            push(String.valueOf(endpoint), metrics);
+        } catch (final IOException e) {
+            rootProject.getLogger().warn("Failed to push metrics to " + endpoint, e);
+        }
+    }
+
+    private static void push(final String endpoint, final byte[] metrics) throws IOException {
+        final HttpURLConnection connection =
+                (HttpURLConnection) new URL(endpoint).openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(PUSH_TIMEOUT_MILLIS);
+            connection.setReadTimeout(PUSH_TIMEOUT_MILLIS);
+            connection.setRequestProperty("Content-Type", CONTENT_TYPE);
+            connection.setFixedLengthStreamingMode(metrics.length);
+            try (final OutputStream out = connection.getOutputStream()) {
+                out.write(metrics);
+            }
+            final int status = connection.getResponseCode();
+            if (status / 100 != 2) {
+                throw new IOException("HTTP " + status + " " + connection.getResponseMessage());
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static void appendSample(
+            final StringBuilder out, final String name, final String labels, final Number value) {
+        out.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private static String formatLabels(final Map<String, String> labels) {
+        if (labels.isEmpty()) {
+            return "";
+        }
+        final StringJoiner joiner = new StringJoiner(",", "{", "}");
+        for (final Map.Entry<String, String> label : new TreeMap<>(labels).entrySet()) {
+            final String value =
+                    label.getValue()
+                            .replace("\\", "\\\\")
+                            .replace("\"", "\\\"")
+                            .replace("\n", "\\n");
+            joiner.add(label.getKey() + "=\"" + value + "\"");
+        }
+        return joiner.toString();
+    }
+
+    public interface TimedAction<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    private static class Family {
+        private final String type;
+        private final String unit;
+        private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+        private final Map<String, DoubleAdder> sums = new ConcurrentHashMap<>();
+
+        private Family(final String type, final String unit) {
+            this.type = type;
+            this.unit = unit;
+        }
+    }
+}
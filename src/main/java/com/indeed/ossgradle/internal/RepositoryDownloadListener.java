@@ -0,0 +1,116 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.OperationFinishEvent;
+import org.gradle.internal.resource.ExternalResourceReadBuildOperationType.Details;
+import org.gradle.internal.resource.ExternalResourceReadBuildOperationType.Result;
+
+import javax.annotation.Nullable;
+import java.net.URI;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/** Adds up the bytes read from, and time spent reading from, each remote repository. */
+class RepositoryDownloadListener extends TaskAwareBuildOperationListener {
+    private final Map<URI, String> repositoryNames;
+    private final Predicate<String> taskFilter;
+    private final Map<String, Downloads> downloads = new ConcurrentHashMap<>();
+
+    /**
+     * @param repositoryNames repository urls, for attributing resources to repositories. Anything
+     *     else is reported by host.
+     * @param taskFilter which task paths to count reads for. The path passed to it is null for
+     *     reads outside of tasks.
+     */
+    RepositoryDownloadListener(
+            final Map<URI, String> repositoryNames,
+            final Predicate<String> taskFilter) {
+        this.repositoryNames = repositoryNames;
+        this.taskFilter = taskFilter;
+    }
+
+    @Override
+    protected void finished(
+            @Nullable final String taskPath,
+            final BuildOperationDescriptor descriptor,
+            final OperationFinishEvent event) {
+        if (!taskFilter.test(taskPath) || !(descriptor.getDetails() instanceof Details)) {
+            return;
+        }
+        final URI location = URI.create(((Details) descriptor.getDetails()).getLocation());
+        final Downloads repository =
+                downloads.computeIfAbsent(getRepositoryName(location), name -> new Downloads());
+        repository.resources.increment();
+        repository.millis.add(event.getEndTime() - event.getStartTime());
+        if (event.getResult() instanceof Result) {
+            repository.bytes.add(((Result) event.getResult()).getBytesRead());
+        }
+        if (event.getFailure() != null) {
+            repository.failures.increment();
+        }
+    }
+
+    private String getRepositoryName(final URI location) {
+        final String url = location.toString();
+        return repositoryNames.entrySet().stream()
+                .filter(entry -> url.startsWith(entry.getKey().toString()))
+                .max(Comparator.comparingInt(entry -> entry.getKey().toString().length()))
+                .map(Map.Entry::getValue)
+                .orElseGet(location::getHost);
+    }
+
+    /** By repository name */
+    public Map<String, Downloads> getDownloads() {
+        return downloads;
+    }
+
+    /** One line per repository, most downloaded first */
+    public String getReport() {
+        if (downloads.isEmpty()) {
+            return "Nothing was downloaded, the caches were already warm";
+        }
+        return downloads.entrySet().stream()
+                .sorted(
+                        Comparator.comparingLong(
+                                        (Map.Entry<String, Downloads> entry) ->
+                                                entry.getValue().getBytes())
+                                .reversed())
+                .map(
+                        entry ->
+                                String.format(
+                                        "%s: %d resources, %.1fMB in %dms of reads",
+                                        entry.getKey(),
+                                        entry.getValue().getResources(),
+                                        entry.getValue().getBytes() / 1024.0 / 1024.0,
+                                        entry.getValue().getMillis()))
+                .collect(Collectors.joining("\n"));
+    }
+
+    public static class Downloads {
+        private final LongAdder resources = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder millis = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        public long getResources() {
+            return resources.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        /** Summed over all reads, which may have run concurrently */
+        public long getMillis() {
+            return millis.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.internal.tasks.execution.ExecuteTaskBuildOperationType;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationListener;
+import org.gradle.internal.operations.OperationFinishEvent;
+import org.gradle.internal.operations.OperationIdentifier;
+import org.gradle.internal.operations.OperationProgressEvent;
+import org.gradle.internal.operations.OperationStartEvent;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** A build operation listener that knows which task, if any, each operation ran as part of. */
+abstract class TaskAwareBuildOperationListener implements BuildOperationListener {
+    private final Map<OperationIdentifier, OperationIdentifier> parents =
+            new ConcurrentHashMap<>();
+    private final Map<OperationIdentifier, String> taskPaths = new ConcurrentHashMap<>();
+
+    protected abstract void finished(
+            @Nullable String taskPath,
+            BuildOperationDescriptor descriptor,
+            OperationFinishEvent event);
+
+    @Override
+    public void started(
+            final BuildOperationDescriptor descriptor, final OperationStartEvent event) {
+        if (descriptor.getParentId() != null) {
+            parents.put(descriptor.getId(), descriptor.getParentId());
+        }
+        if (descriptor.getDetails() instanceof ExecuteTaskBuildOperationType.Details) {
+            taskPaths.put(
+                    descriptor.getId(),
+                    ((ExecuteTaskBuildOperationType.Details) descriptor.getDetails())
+                            .getTaskPath());
+        }
+    }
+
+    @Override
+    public void progress(
+            final OperationIdentifier operationIdentifier, final OperationProgressEvent event) {}
+
+    @Override
+    public void finished(
+            final BuildOperationDescriptor descriptor, final OperationFinishEvent event) {
+        try {
+            finished(findTaskPath(descriptor.getId()), descriptor, event);
+        } finally {
+            parents.remove(descriptor.getId());
+            taskPaths.remove(descriptor.getId());
+        }
+    }
+
+    @Nullable
+    private String findTaskPath(final OperationIdentifier id) {
+        OperationIdentifier current = id;
+        while (current != null) {
+            final String taskPath = taskPaths.get(current);
+            if (taskPath != null) {
+                return taskPath;
+            }
+            current = parents.get(current);
+        }
+        return null;
+    }
+}
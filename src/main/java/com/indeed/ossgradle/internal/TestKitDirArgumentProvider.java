@@ -0,0 +1,30 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.tasks.Internal;
+import org.gradle.process.CommandLineArgumentProvider;
+
+import java.io.File;
+import java.util.Collections;
+
+/**
+ * Points GradleRunner at a shared TestKit directory. The directory only holds caches and daemons,
+ * so it's internal: it doesn't change what the tests do, and its absolute path would otherwise
+ * keep the test task from being cached across checkouts.
+ */
+public class TestKitDirArgumentProvider implements CommandLineArgumentProvider {
+    private final File testKitDir;
+
+    public TestKitDirArgumentProvider(final File testKitDir) {
+        this.testKitDir = testKitDir;
+    }
+
+    @Internal
+    public File getTestKitDir() {
+        return testKitDir;
+    }
+
+    @Override
+    public Iterable<String> asArguments() {
+        return Collections.singletonList("-Dorg.gradle.testkit.dir=" + testKitDir);
+    }
+}
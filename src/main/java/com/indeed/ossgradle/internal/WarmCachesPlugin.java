@@ -0,0 +1,87 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.repositories.ArtifactRepository;
+import org.gradle.api.artifacts.repositories.UrlArtifactRepository;
+import org.gradle.api.tasks.TaskProvider;
+
+import javax.annotation.Nullable;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Adds warmCaches to every project, for pre-populating the gradle user home of CI images. */
+public class WarmCachesPlugin implements Plugin<Project> {
+    public static final String TASK_NAME = "warmCaches";
+    private static final String LOOKUP_TASK_NAME = "warmVersionLookup";
+
+    @Override
+    public void apply(final Project rootProject) {
+        IndeedOssUtil.assertRootProject(rootProject);
+
+        final TaskProvider<WarmVersionLookupTask> lookupTask =
+                rootProject
+                        .getTasks()
+                        .register(
+                                LOOKUP_TASK_NAME,
+                                WarmVersionLookupTask.class,
+                                task ->
+                                        task.setDescription(
+                                                "Runs the version lookup a publish would do"));
+        final TaskProvider<WarmCachesTask> rootTask = register(rootProject, lookupTask);
+        rootProject.subprojects(
+                project -> {
+                    final TaskProvider<WarmCachesTask> task = register(project, lookupTask);
+                    rootTask.configure(t -> t.dependsOn(task));
+                });
+
+        rootProject
+                .getGradle()
+                .getTaskGraph()
+                .whenReady(
+                        graph -> {
+                            final WarmCachesTask task = rootTask.get();
+                            if (!graph.hasTask(task)) {
+                                return;
+                            }
+                            final RepositoryDownloadListener listener =
+                                    new RepositoryDownloadListener(
+                                            getRepositoryNames(rootProject),
+                                            WarmCachesPlugin::isWarmingTask);
+                            IndeedOssUtil.addBuildOperationListener(rootProject, listener);
+                            task.setDownloadListener(listener);
+                        });
+    }
+
+    private static TaskProvider<WarmCachesTask> register(
+            final Project project, final TaskProvider<WarmVersionLookupTask> lookupTask) {
+        return project.getTasks()
+                .register(
+                        TASK_NAME,
+                        WarmCachesTask.class,
+                        task -> {
+                            task.setDescription(
+                                    "Downloads every dependency the build could need");
+                            task.dependsOn(lookupTask);
+                        });
+    }
+
+    private static boolean isWarmingTask(@Nullable final String taskPath) {
+        return taskPath != null
+                && (taskPath.endsWith(":" + TASK_NAME)
+                        || taskPath.equals(":" + LOOKUP_TASK_NAME));
+    }
+
+    private static Map<URI, String> getRepositoryNames(final Project rootProject) {
+        final Map<URI, String> names = new HashMap<>();
+        for (final Project project : rootProject.getAllprojects()) {
+            for (final ArtifactRepository repo : project.getRepositories()) {
+                if (repo instanceof UrlArtifactRepository) {
+                    names.putIfAbsent(((UrlArtifactRepository) repo).getUrl(), repo.getName());
+                }
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,78 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolves everything a build of this project would download, so it lands in the gradle user
+ * home ahead of time: every resolvable configuration and the spotless formatters. In the root
+ * project it also reports what all of them downloaded.
+ *
+ * <p>Every project has its own task, so with --parallel the projects resolve concurrently.
+ */
+public class WarmCachesTask extends DefaultTask {
+    private RepositoryDownloadListener downloadListener;
+
+    @Internal
+    @Nullable
+    public RepositoryDownloadListener getDownloadListener() {
+        return downloadListener;
+    }
+
+    public void setDownloadListener(final RepositoryDownloadListener downloadListener) {
+        this.downloadListener = downloadListener;
+    }
+
+    @TaskAction
+    public void run() {
+        final Project project = getProject();
+        final long start = System.nanoTime();
+        // Copied, since resolving can add configurations, e.g. for detached configurations
+        final List<Configuration> configurations = new ArrayList<>(project.getConfigurations());
+        int resolved = 0;
+        for (final Configuration configuration : configurations) {
+            if (!configuration.isCanBeResolved()) {
+                continue;
+            }
+            // Lenient, since not every configuration is meant to resolve in every environment
+            configuration
+                    .getIncoming()
+                    .artifactView(view -> view.setLenient(true))
+                    .getFiles()
+                    .getFiles();
+            resolved++;
+        }
+
+        final List<String> formatters = IndeedSpotlessPlugin.getFormatterDependencies(project);
+        if (!formatters.isEmpty()) {
+            final Dependency[] dependencies =
+                    formatters.stream()
+                            .map(project.getDependencies()::create)
+                            .toArray(Dependency[]::new);
+            project.getConfigurations()
+                    .detachedConfiguration(dependencies)
+                    .getIncoming()
+                    .artifactView(view -> view.setLenient(true))
+                    .getFiles()
+                    .getFiles();
+        }
+
+        getLogger()
+                .info(
+                        "Resolved {} configurations and {} formatters in {}ms",
+                        resolved,
+                        formatters.size(),
+                        (System.nanoTime() - start) / 1_000_000);
+        if (downloadListener != null) {
+            getLogger().lifecycle(downloadListener.getReport());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+
+/** Runs an empty TestKit build, leaving its daemon behind for the functional tests */
+public abstract class WarmTestKitAction implements WorkAction<WarmTestKitAction.Parameters> {
+    public interface Parameters extends WorkParameters {
+        DirectoryProperty getTestKitDir();
+
+        DirectoryProperty getProjectDir();
+
+        DirectoryProperty getGradleHome();
+    }
+
+    @Override
+    public void execute() {
+        final File projectDir = getParameters().getProjectDir().get().getAsFile();
+        try {
+            Files.createDirectories(projectDir.toPath());
+            Files.write(new File(projectDir, "settings.gradle").toPath(), new byte[0]);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        GradleRunner.create()
+                .withGradleInstallation(getParameters().getGradleHome().get().getAsFile())
+                .withTestKitDir(getParameters().getTestKitDir().get().getAsFile())
+                .withProjectDir(projectDir)
+                .withArguments("help")
+                .build();
+    }
+}
@@ -0,0 +1,68 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.jvm.toolchain.JavaLauncher;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+import java.io.File;
+
+/**
+ * Starts as many TestKit daemons as the functional tests run forks, so that each fork's first
+ * build finds an idle daemon instead of starting one. The builds run in a worker on the same java
+ * as the tests, since TestKit only reuses daemons that were started with the same java.
+ *
+ * <p>TestKit daemons stop after a couple of idle minutes, so this runs right before the tests
+ * every time, and has no outputs to be up-to-date on.
+ */
+public abstract class WarmTestKitTask extends DefaultTask {
+    @Internal
+    public abstract DirectoryProperty getTestKitDir();
+
+    @Internal
+    public abstract Property<Integer> getDaemons();
+
+    @Internal
+    public abstract Property<JavaLauncher> getJavaLauncher();
+
+    @Internal
+    public abstract ConfigurableFileCollection getTestKitClasspath();
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    @TaskAction
+    public void run() {
+        final WorkQueue queue =
+                getWorkerExecutor()
+                        .processIsolation(
+                                spec -> {
+                                    spec.getClasspath().from(getTestKitClasspath());
+                                    if (getJavaLauncher().isPresent()) {
+                                        spec.forkOptions(
+                                                fork ->
+                                                        fork.setExecutable(
+                                                                getJavaLauncher()
+                                                                        .get()
+                                                                        .getExecutablePath()));
+                                    }
+                                });
+        final File gradleHome = getProject().getGradle().getGradleHomeDir();
+        for (int i = 0; i < getDaemons().get(); i++) {
+            final File projectDir = new File(getTemporaryDir(), String.valueOf(i));
+            queue.submit(
+                    WarmTestKitAction.class,
+                    params -> {
+                        params.getTestKitDir().set(getTestKitDir());
+                        params.getProjectDir().set(projectDir);
+                        params.getGradleHome().set(gradleHome);
+                    });
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.tasks.TaskAction;
+
+import java.util.Set;
+
+/**
+ * Runs the version lookup a publish does, and fetches what gradle plugin publishes need from the
+ * plugin portal. The lookup adds repositories and filters the existing ones, which gradle only
+ * allows before they've been used, so every warmCaches task runs after this one.
+ */
+public class WarmVersionLookupTask extends DefaultTask {
+    @TaskAction
+    public void run() {
+        final Project rootProject = getProject();
+        final Set<ModuleIdentifier> ids =
+                IndeedOssLibraryRootPlugin.getPublishedModuleIds(rootProject.getGradle());
+        if (ids.isEmpty()) {
+            return;
+        }
+        IndeedOssLibraryRootPlugin.findLatestVersions(rootProject, ids);
+
+        final boolean hasGradlePlugins =
+                rootProject.getAllprojects().stream()
+                        .anyMatch(p -> p.getPlugins().hasPlugin(IndeedOssGradlePluginPlugin.class));
+        if (hasGradlePlugins) {
+            IndeedOssLibraryRootPlugin.resolveFromPluginPortal(
+                    rootProject, IndeedOssGradlePluginPlugin.PLUGIN_PORTAL_DEPENDENCIES);
+        }
+    }
+}
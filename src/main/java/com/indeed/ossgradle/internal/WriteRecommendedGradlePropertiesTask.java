@@ -0,0 +1,65 @@
+package com.indeed.ossgradle.internal;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Writes the gradle.properties settings we'd recommend for this machine. This doesn't touch the
+ * project's own gradle.properties, since what suits one machine rarely suits every other.
+ */
+public abstract class WriteRecommendedGradlePropertiesTask extends DefaultTask {
+    @Input
+    public abstract Property<Integer> getCores();
+
+    @Input
+    public abstract Property<Long> getMemoryMb();
+
+    /** Whether the cores or memory are limited by a container, rather than the machine's */
+    @Input
+    public abstract Property<Boolean> getContainerLimited();
+
+    @Input
+    public abstract Property<Long> getDaemonHeapMb();
+
+    @Input
+    public abstract Property<Long> getCompilerHeapMb();
+
+    @OutputFile
+    public abstract RegularFileProperty getOutputFile();
+
+    @TaskAction
+    public void run() throws IOException {
+        final int cores = getCores().get();
+        final String properties =
+                String.format(
+                        "# Recommended for %d cores and %dMB of memory%s%n"
+                                + "org.gradle.jvmargs=-Xmx%dm -XX:MaxMetaspaceSize=512m"
+                                + " -XX:+HeapDumpOnOutOfMemoryError -Dfile.encoding=UTF-8%n"
+                                + "org.gradle.parallel=%s%n"
+                                + "org.gradle.workers.max=%d%n"
+                                + "org.gradle.caching=true%n"
+                                + "kotlin.daemon.jvmargs=-Xmx%dm%n",
+                        cores,
+                        getMemoryMb().get(),
+                        getContainerLimited().get() ? ", as limited by the container" : "",
+                        getDaemonHeapMb().get(),
+                        cores > 1,
+                        cores,
+                        getCompilerHeapMb().get());
+        Files.write(
+                getOutputFile().get().getAsFile().toPath(),
+                properties.getBytes(StandardCharsets.UTF_8));
+        getLogger()
+                .lifecycle(
+                        "Recommended gradle.properties written to "
+                                + getOutputFile().get().getAsFile());
+    }
+}
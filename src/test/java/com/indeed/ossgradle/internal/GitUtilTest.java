@@ -0,0 +1,167 @@
+package com.indeed.ossgradle.internal;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Runs against real clones, in the shapes CI systems check repositories out in */
+class GitUtilTest {
+    private static final Map<String, String> NO_CI = Collections.emptyMap();
+
+    @TempDir Path tempDir;
+    private Path origin;
+    private String headHash;
+
+    @BeforeEach
+    void createOrigin() throws IOException, InterruptedException {
+        origin = tempDir.resolve("origin");
+        Files.createDirectories(origin);
+        git(origin, "init");
+        git(origin, "symbolic-ref", "HEAD", "refs/heads/main");
+        git(origin, "config", "uploadpack.allowFilter", "true");
+        commit("first");
+        commit("second");
+        git(origin, "branch", "feature");
+        headHash = git(origin, "rev-parse", "HEAD");
+    }
+
+    @Test
+    void shallowClone() throws IOException, InterruptedException {
+        final Project project = cloneOrigin("--depth", "1");
+
+        assertEquals(headHash.substring(0, 7), GitUtil.getShortHash(project));
+        assertEquals("main", GitUtil.getCurrentBranch(project, NO_CI));
+        assertEquals("main", GitUtil.getDefaultBranch(project, NO_CI));
+    }
+
+    @Test
+    void partialClone() throws IOException, InterruptedException {
+        final Project project = cloneOrigin("--filter=blob:none");
+
+        assertEquals(headHash.substring(0, 7), GitUtil.getShortHash(project));
+        assertEquals("main", GitUtil.getCurrentBranch(project, NO_CI));
+        assertEquals("main", GitUtil.getDefaultBranch(project, NO_CI));
+    }
+
+    @Test
+    void detachedHead() throws IOException, InterruptedException {
+        final Project project = cloneOrigin("--depth", "1");
+        git(project.getProjectDir().toPath(), "checkout", "--detach");
+
+        assertEquals(headHash.substring(0, 7), GitUtil.getShortHash(project));
+        // Without a CI branch, all we know is the commit
+        assertEquals(headHash, GitUtil.getCurrentBranch(project, NO_CI));
+        assertEquals(
+                "feature",
+                GitUtil.getCurrentBranch(project, ImmutableMap.of("BRANCH_NAME", "feature")));
+        assertEquals(
+                "feature",
+                GitUtil.getCurrentBranch(
+                        project, ImmutableMap.of("GIT_BRANCH", "origin/feature")));
+        assertEquals(
+                "feature",
+                GitUtil.getCurrentBranch(
+                        project, ImmutableMap.of("CI_COMMIT_REF_NAME", "feature")));
+        assertEquals(
+                "feature",
+                GitUtil.getCurrentBranch(
+                        project, ImmutableMap.of("GITHUB_REF", "refs/heads/feature")));
+        assertEquals("main", GitUtil.getDefaultBranch(project, NO_CI));
+    }
+
+    @Test
+    void defaultBranchFromCi() throws IOException, InterruptedException {
+        final Project project = cloneOrigin("--depth", "1");
+
+        assertEquals(
+                "trunk",
+                GitUtil.getDefaultBranch(project, ImmutableMap.of("CI_DEFAULT_BRANCH", "trunk")));
+    }
+
+    @Test
+    void defaultBranchChangedAfterClone() throws IOException, InterruptedException {
+        final Project project = cloneOrigin("--depth", "1");
+        git(origin, "symbolic-ref", "HEAD", "refs/heads/feature");
+
+        // origin/HEAD still points at main, but the remote knows better
+        assertEquals("feature", GitUtil.getDefaultBranch(project, NO_CI));
+    }
+
+    @Test
+    void defaultBranchWithoutRemote() throws IOException, InterruptedException {
+        final Project project = cloneOrigin("--depth", "1");
+        MoreFiles.deleteRecursively(origin, RecursiveDeleteOption.ALLOW_INSECURE);
+
+        assertEquals("main", GitUtil.getDefaultBranch(project, NO_CI));
+    }
+
+    private Project cloneOrigin(final String... options) throws IOException, InterruptedException {
+        final Path clone = tempDir.resolve("clone");
+        final List<String> args = new ArrayList<>();
+        args.add("clone");
+        args.addAll(Arrays.asList(options));
+        // Shallow and partial clones are only supported over a transport, not plain paths
+        args.add(origin.toUri().toString());
+        args.add(clone.toString());
+        git(tempDir, args.toArray(new String[0]));
+        return ProjectBuilder.builder().withProjectDir(clone.toFile()).build();
+    }
+
+    private void commit(final String message) throws IOException, InterruptedException {
+        Files.write(origin.resolve(message + ".txt"), message.getBytes(StandardCharsets.UTF_8));
+        git(origin, "add", ".");
+        git(
+                origin,
+                "-c",
+                "user.name=test",
+                "-c",
+                "user.email=test@example.com",
+                "commit",
+                "-m",
+                message);
+    }
+
+    private static String git(final Path dir, final String... args)
+            throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+        final Process process =
+                new ProcessBuilder(command)
+                        .directory(dir.toFile())
+                        .redirectErrorStream(true)
+                        .start();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (final InputStream in = process.getInputStream()) {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+        }
+        final String result = output.toString(StandardCharsets.UTF_8.name()).trim();
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException(command + " failed: " + result);
+        }
+        return result;
+    }
+}
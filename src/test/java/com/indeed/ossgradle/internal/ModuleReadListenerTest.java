@@ -0,0 +1,54 @@
+package com.indeed.ossgradle.internal;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.OperationFinishEvent;
+import org.gradle.internal.operations.OperationIdentifier;
+import org.gradle.internal.operations.OperationStartEvent;
+import org.gradle.internal.resource.ExternalResourceReadBuildOperationType;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ModuleReadListenerTest {
+    private static final ModuleIdentifier BAR = DefaultModuleIdentifier.newId("com.foo", "bar");
+    private static final ModuleIdentifier BAZ =
+            DefaultModuleIdentifier.newId("com.foo.bar", "baz");
+    // Reads are children of the task that was already running when the listener was added, so
+    // the listener never sees that task start
+    private static final OperationIdentifier TASK = new OperationIdentifier(1);
+
+    private final AtomicLong nextId = new AtomicLong(2);
+    private final ModuleReadListener listener =
+            new ModuleReadListener(ImmutableList.of(BAR, BAZ));
+
+    @Test
+    void attributesReadsToModules() {
+        read("https://repo.maven.apache.org/maven2/com/foo/bar/maven-metadata.xml", 30);
+        read("https://repo.maven.apache.org/maven2/com/foo/bar/1.0.0/bar-1.0.0.pom", 20);
+        read("https://repo.maven.apache.org/maven2/com/foo/bar/baz/maven-metadata.xml", 40);
+        read("https://repo.maven.apache.org/maven2/com/foo/other/maven-metadata.xml", 100);
+
+        assertEquals(50, listener.getMillis(BAR));
+        assertEquals(40, listener.getMillis(BAZ));
+    }
+
+    @Test
+    void modulesWithoutReadsTakeNoTime() {
+        assertEquals(0, listener.getMillis(BAR));
+    }
+
+    private void read(final String location, final long millis) {
+        final ExternalResourceReadBuildOperationType.Details details = () -> location;
+        final BuildOperationDescriptor descriptor =
+                BuildOperationDescriptor.displayName("Download " + location)
+                        .details(details)
+                        .build(new OperationIdentifier(nextId.getAndIncrement()), TASK);
+        listener.started(descriptor, new OperationStartEvent(1000));
+        listener.finished(descriptor, new OperationFinishEvent(1000, 1000 + millis, null, null));
+    }
+}